@@ -0,0 +1,103 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+
+import mfi.photos.client.model.Photo;
+
+/**
+ * Generated test images, so the benchmarks need no fixtures, and the image
+ * processing under test.
+ */
+public class BenchmarkImages {
+
+	private BenchmarkImages() {
+	}
+
+	/**
+	 * Image processing without ffmpeg. The temp workspace gets a directory of
+	 * its own, it deletes its root when created - in the default temp dir that
+	 * could be the workspace of a running client.
+	 */
+	public static ImageProcessing imageProcessing() throws IOException {
+
+		File tempDir = Files.createTempDirectory("photos_benchmark_").toFile();
+		FileUtils.forceDeleteOnExit(tempDir);
+		return new ImageProcessing(null, new TempWorkspace(tempDir.getAbsolutePath(), 0, null, 0),
+				new SyncMetrics(), new JpegEncoder(0.75f, false, JpegEncoder.Chroma.YUV420),
+				new VideoEncoding(VideoEncoding.Profile.ARCHIVE, 0, 0, 0, new CpuBudget(1)));
+	}
+
+	/**
+	 * Landscape 4:3 image with gradients and noise, so jpeg encoding has
+	 * realistic work to do.
+	 */
+	public static BufferedImage generate(int megapixels) {
+
+		int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000d * 4d / 3d));
+		int height = width * 3 / 4;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Random random = new Random(42L);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int noise = random.nextInt(32);
+				int r = (x * 255 / width + noise) & 0xff;
+				int g = (y * 255 / height + noise) & 0xff;
+				int b = ((x + y) * 255 / (width + height) + noise) & 0xff;
+				pixels[y * width + x] = (r << 16) | (g << 8) | b;
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Writes the image as jpeg with an exif orientation tag (1-8).
+	 */
+	public static File writeJpeg(BufferedImage image, int orientation) throws IOException {
+
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		ImageIO.write(image, Photo.DEST_PIC_DATATYPE, jpeg);
+		byte[] jpegBytes = jpeg.toByteArray();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// SOI, then APP1 exif segment, then the rest of the jpeg
+		out.write(jpegBytes, 0, 2);
+		out.write(exifSegment(orientation));
+		out.write(jpegBytes, 2, jpegBytes.length - 2);
+
+		File file = File.createTempFile("photos_benchmark_" + orientation + "_", ".jpg");
+		file.deleteOnExit();
+		FileUtils.writeByteArrayToFile(file, out.toByteArray());
+		return file;
+	}
+
+	private static byte[] exifSegment(int orientation) {
+
+		byte[] tiff = new byte[] { 'M', 'M', 0, 42, 0, 0, 0, 8, // header, ifd at 8
+				0, 1, // one entry
+				0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, // orientation, short
+				0, 0, 0, 0 }; // no next ifd
+		byte[] exifHeader = new byte[] { 'E', 'x', 'i', 'f', 0, 0 };
+		int length = 2 + exifHeader.length + tiff.length;
+
+		ByteArrayOutputStream segment = new ByteArrayOutputStream();
+		segment.write(0xff);
+		segment.write(0xe1);
+		segment.write(length >> 8);
+		segment.write(length & 0xff);
+		segment.write(exifHeader, 0, exifHeader.length);
+		segment.write(tiff, 0, tiff.length);
+		return segment.toByteArray();
+	}
+
+}
@@ -0,0 +1,48 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Video preview compositing (frame scaled to preview size with play symbol),
+ * without the frame extraction by ffmpeg.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PreviewBenchmark {
+
+	@Param({ "12", "24", "48" })
+	private int megapixels;
+
+	private ImageProcessing imageProcessing;
+	private BufferedImage frame;
+
+	@Setup
+	public void setup() throws IOException {
+		imageProcessing = BenchmarkImages.imageProcessing();
+		frame = BenchmarkImages.generate(megapixels);
+	}
+
+	@Benchmark
+	public ResizedImage composePreviewImage() throws Exception {
+		return imageProcessing.composePreviewImage(frame);
+	}
+
+}
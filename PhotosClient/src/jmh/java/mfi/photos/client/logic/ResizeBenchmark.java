@@ -0,0 +1,59 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mfi.photos.client.model.Dimension;
+
+/**
+ * ImageProcessing.resizeImage, both overloads, including jpeg encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResizeBenchmark {
+
+	@Param({ "12", "24", "48" })
+	private int megapixels;
+
+	@Param({ "1080", "90" })
+	private int targetPixels;
+
+	private ImageProcessing imageProcessing;
+	private BufferedImage image;
+	private Dimension targetSize;
+
+	@Setup
+	public void setup() throws IOException {
+		imageProcessing = BenchmarkImages.imageProcessing();
+		image = BenchmarkImages.generate(megapixels);
+		targetSize = new Dimension(image.getWidth() * targetPixels / image.getHeight(), targetPixels);
+	}
+
+	@Benchmark
+	public ResizedImage resizeToSmallerSide() {
+		return imageProcessing.resizeImage(image, targetPixels, false);
+	}
+
+	@Benchmark
+	public ResizedImage resizeToDimension() {
+		return imageProcessing.resizeImage(image, targetSize, false);
+	}
+
+}
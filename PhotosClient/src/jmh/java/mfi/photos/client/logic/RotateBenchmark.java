@@ -0,0 +1,52 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mfi.photos.client.model.Photo;
+
+/**
+ * ImageProcessing.rotateImageToZeroDegree for all exif orientations,
+ * including jpeg decoding and exif reading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RotateBenchmark {
+
+	@Param({ "12", "24", "48" })
+	private int megapixels;
+
+	@Param({ "1", "2", "3", "4", "5", "6", "7", "8" })
+	private int orientation;
+
+	private ImageProcessing imageProcessing;
+	private Photo photo;
+
+	@Setup
+	public void setup() throws Exception {
+		imageProcessing = BenchmarkImages.imageProcessing();
+		photo = new Photo(BenchmarkImages.writeJpeg(BenchmarkImages.generate(megapixels), orientation));
+	}
+
+	@Benchmark
+	public BufferedImage rotateImageToZeroDegree() throws Exception {
+		return imageProcessing.rotateImageToZeroDegree(photo);
+	}
+
+}
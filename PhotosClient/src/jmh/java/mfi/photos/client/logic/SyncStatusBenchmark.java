@@ -0,0 +1,171 @@
+package mfi.photos.client.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import mfi.photos.client.model.Album;
+import mfi.photos.client.model.Photo;
+import mfi.photos.client.model.SyncModel;
+
+/**
+ * Startup scan (Synchronizer.lookupSyncStatus) against a generated album tree
+ * and a fake server. Reports wall, user and system cpu time per phase, wall
+ * minus cpu is the time waiting for the file system.
+ *
+ * <pre>
+ * mvn -P benchmark compile exec:java -Dexec.mainClass=mfi.photos.client.logic.SyncStatusBenchmark
+ *     -Dexec.args="/mnt/nas/benchmark 1500 270 10 5"
+ * </pre>
+ *
+ * Arguments: base dir, albums, files per album, percent of albums out of
+ * sync, iterations. The tree is generated once and reused if the base dir
+ * exists. Drop the page cache between runs to measure a cold scan.
+ */
+public class SyncStatusBenchmark {
+
+	private static final String VIDEO_SUFFIX = ".mp4";
+	private static final String PHOTO_SUFFIX = ".jpg";
+
+	private static ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length < 3) {
+			System.err.println("usage: SyncStatusBenchmark <baseDir> <albums> <filesPerAlbum> "
+					+ "[outOfSyncPercent] [iterations]");
+			System.exit(2);
+		}
+		File baseDir = new File(args[0]);
+		int albums = Integer.parseInt(args[1]);
+		int filesPerAlbum = Integer.parseInt(args[2]);
+		int outOfSyncPercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+		if (!baseDir.exists()) {
+			long start = System.nanoTime();
+			generateTree(baseDir, albums, filesPerAlbum);
+			System.out.println(String.format(Locale.ROOT, "generated %d albums with %d files in %.1f s", albums,
+					albums * filesPerAlbum, (System.nanoTime() - start) / 1e9d));
+		}
+
+		Synchronizer synchronizer = new Synchronizer();
+		FakeServerConnection connection = new FakeServerConnection(
+				remoteHashes(synchronizer, baseDir, outOfSyncPercent));
+
+		System.out.println("iteration;phase;wallMillis;userMillis;systemMillis;waitMillis");
+		for (int i = 1; i <= iterations; i++) {
+			SyncModel syncModel = new SyncModel(baseDir.getAbsolutePath());
+			PhaseTimer timer = new PhaseTimer();
+			synchronizer.readLocalAlbums(syncModel);
+			timer.phase(i, "localScan");
+			synchronizer.hashLocalAlbums(syncModel);
+			timer.phase(i, "albumHash");
+			synchronizer.compareWithRemote(syncModel, connection);
+			timer.phase(i, "compare");
+			timer.total(i);
+		}
+	}
+
+	private static void generateTree(File baseDir, int albums, int filesPerAlbum) throws IOException {
+
+		Random random = new Random(42L);
+		long mtimeBase = 1_500_000_000_000L;
+		for (int a = 0; a < albums; a++) {
+			File albumDir = new File(baseDir, String.format("Album %05d", a));
+			if (!albumDir.mkdirs()) {
+				throw new IOException("could not create " + albumDir.getAbsolutePath());
+			}
+			for (int f = 0; f < filesPerAlbum; f++) {
+				boolean video = random.nextInt(20) == 0;
+				File file = new File(albumDir, String.format("IMG_%05d", f) + (video ? VIDEO_SUFFIX : PHOTO_SUFFIX));
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					// sparse file, only the size matters
+					raf.setLength(video ? 20_000_000L + random.nextInt(200_000_000)
+							: 2_000_000L + random.nextInt(10_000_000));
+				}
+				file.setLastModified(mtimeBase + random.nextInt(Integer.MAX_VALUE) * 1000L);
+			}
+		}
+	}
+
+	/**
+	 * Album hashes as the server would report them, a part of them differing.
+	 */
+	private static Map<String, String> remoteHashes(Synchronizer synchronizer, File baseDir, int outOfSyncPercent) {
+
+		SyncModel syncModel = new SyncModel(baseDir.getAbsolutePath());
+		synchronizer.readLocalAlbums(syncModel);
+		synchronizer.hashLocalAlbums(syncModel);
+
+		Map<String, String> remoteHashes = new HashMap<>();
+		int index = 0;
+		for (Album album : syncModel.getAlbums()) {
+			boolean outOfSync = index++ % 100 < outOfSyncPercent;
+			remoteHashes.put(album.getKey(), outOfSync ? "changed" + album.getHashLocal() : album.getHashLocal());
+		}
+		return remoteHashes;
+	}
+
+	private static class FakeServerConnection extends PhotosServerConnection {
+
+		private Map<String, String> remoteHashes;
+
+		private FakeServerConnection(Map<String, String> remoteHashes) {
+			super(null, null, null, null, null, new SyncMetrics());
+			this.remoteHashes = remoteHashes;
+		}
+
+		@Override
+		public Map<String, String> readAlbumKeysAndHashes() {
+			return remoteHashes;
+		}
+
+		@Override
+		public void readPhotos(Album album) {
+			// every tenth photo of an album out of sync is missing remote
+			int index = 0;
+			for (Photo photo : album.getPhotos()) {
+				photo.setRemoteHash(index++ % 10 == 0 ? null : photo.getLocalHash());
+			}
+			album.setHasRemotePhotoData(true);
+		}
+	}
+
+	private static class PhaseTimer {
+
+		private long startWall = System.nanoTime();
+		private long startCpu = threadBean.getCurrentThreadCpuTime();
+		private long startUser = threadBean.getCurrentThreadUserTime();
+		private long wall = startWall;
+		private long cpu = startCpu;
+		private long user = startUser;
+
+		private void phase(int iteration, String phase) {
+			long nowWall = System.nanoTime();
+			long nowCpu = threadBean.getCurrentThreadCpuTime();
+			long nowUser = threadBean.getCurrentThreadUserTime();
+			print(iteration, phase, nowWall - wall, nowCpu - cpu, nowUser - user);
+			wall = nowWall;
+			cpu = nowCpu;
+			user = nowUser;
+		}
+
+		private void total(int iteration) {
+			print(iteration, "total", wall - startWall, cpu - startCpu, user - startUser);
+		}
+
+		private static void print(int iteration, String phase, long wallNanos, long cpuNanos, long userNanos) {
+			System.out.println(String.format(Locale.ROOT, "%d;%s;%d;%d;%d;%d", iteration, phase,
+					wallNanos / 1_000_000L, userNanos / 1_000_000L, Math.max(0, cpuNanos - userNanos) / 1_000_000L,
+					Math.max(0, wallNanos - cpuNanos) / 1_000_000L));
+		}
+	}
+
+}
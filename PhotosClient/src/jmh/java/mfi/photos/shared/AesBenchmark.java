@@ -0,0 +1,97 @@
+package mfi.photos.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * AES encryption and decryption of in-memory payloads from thumbnail (20 KB)
+ * to video size (500 MB). Time per operation, divide the payload size by it
+ * for MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AesBenchmark {
+
+	private static final char[] PASSWORD = "benchmark-secret".toCharArray();
+
+	@Param({ "20480", "1048576", "52428800", "524288000" })
+	private int payloadSize;
+
+	private byte[] plain;
+	private byte[] encrypted;
+
+	@Setup
+	public void setup() {
+		plain = new byte[payloadSize];
+		new Random(42L).nextBytes(plain);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(payloadSize + payloadSize / 100 + 1024);
+		AES.encrypt(plain.length, PASSWORD, new ByteArrayInputStream(plain), output);
+		encrypted = output.toByteArray();
+	}
+
+	@Benchmark
+	public long encryptToConsumer(Blackhole blackhole) {
+		return AES.encrypt(plain.length, PASSWORD, new ByteArrayInputStream(plain), "benchmark.jpg", "benchmark",
+				blackhole::consume);
+	}
+
+	@Benchmark
+	public void encryptToOutputStream() {
+		AES.encrypt(plain.length, PASSWORD, new ByteArrayInputStream(plain), NullOutputStream.NULL_OUTPUT_STREAM);
+	}
+
+	@Benchmark
+	public void decrypt() {
+		AES.decrypt(PASSWORD, new ByteArrayInputStream(encrypted), NullOutputStream.NULL_OUTPUT_STREAM, 0, -1);
+	}
+
+	@Benchmark
+	public void decryptFromMiddle() {
+		// range request as done for video streaming
+		AES.decrypt(PASSWORD, new ByteArrayInputStream(encrypted), NullOutputStream.NULL_OUTPUT_STREAM,
+				payloadSize / 2, -1);
+	}
+
+	/**
+	 * PBKDF2 key derivation, done once per file on encryption and decryption.
+	 */
+	@State(Scope.Benchmark)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public static class Keygen {
+
+		private byte[] salt;
+
+		@Setup
+		public void setup() {
+			salt = new byte[16];
+			new Random(42L).nextBytes(salt);
+		}
+
+		@Benchmark
+		public Object keygen() {
+			return AES.keygen(256, PASSWORD, salt);
+		}
+	}
+
+}
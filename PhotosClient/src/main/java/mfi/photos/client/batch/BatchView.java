@@ -0,0 +1,141 @@
+package mfi.photos.client.batch;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import mfi.photos.client.logic.SyncView;
+import mfi.photos.client.model.SyncProgress;
+
+/**
+ * Headless SyncView. Writes one json object per line and event, keeps the
+ * album rows of the last status check instead of a table.
+ */
+public class BatchView implements SyncView {
+
+	private PrintStream out;
+
+	private Gson gson = new GsonBuilder().create();
+
+	private Map<String, Row> rows = new LinkedHashMap<>();
+
+	private volatile boolean cancel = false;
+
+	public BatchView(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void viewMessage(String messageString) {
+		if (StringUtils.isNotBlank(messageString)) {
+			JsonObject event = new JsonObject();
+			event.addProperty("text", messageString.trim());
+			writeEvent("message", event);
+		}
+	}
+
+	@Override
+	public void appendMessage(String messageString) {
+		viewMessage(messageString);
+	}
+
+	@Override
+	public void viewProgress(SyncProgress progress) {
+		writeEvent("progress", gson.toJsonTree(progress).getAsJsonObject());
+	}
+
+	@Override
+	public boolean isCancel() {
+		return cancel;
+	}
+
+	public void cancel() {
+		cancel = true;
+	}
+
+	@Override
+	public void showConnectionError() {
+		error("Photos Server ist nicht erreichbar.");
+	}
+
+	public void error(String messageString) {
+		JsonObject event = new JsonObject();
+		event.addProperty("text", messageString);
+		writeEvent("error", event);
+	}
+
+	@Override
+	public synchronized void clearTable() {
+		rows.clear();
+	}
+
+	@Override
+	public synchronized void addRow(String key, Boolean sync, String album, String photoCount, String status,
+			Boolean[] userFlag) {
+		rows.put(key, new Row(key, album, photoCount, status, userFlag));
+	}
+
+	public synchronized Map<String, Row> getRows() {
+		return new LinkedHashMap<>(rows);
+	}
+
+	public void writeEvent(String eventName, Object payload) {
+		JsonObject event = new JsonObject();
+		event.addProperty("event", eventName);
+		event.addProperty("time", System.currentTimeMillis());
+		JsonObject fields = payload instanceof JsonObject ? (JsonObject) payload
+				: gson.toJsonTree(payload).getAsJsonObject();
+		for (Map.Entry<String, JsonElement> field : fields.entrySet()) {
+			event.add(field.getKey(), field.getValue());
+		}
+		synchronized (out) {
+			out.println(gson.toJson(event));
+			out.flush();
+		}
+	}
+
+	public static class Row {
+
+		private String key;
+		private String album;
+		private String photoCount;
+		private String status;
+		private Boolean[] userFlags;
+
+		private Row(String key, String album, String photoCount, String status, Boolean[] userFlags) {
+			this.key = key;
+			this.album = album;
+			this.photoCount = photoCount;
+			this.status = status;
+			this.userFlags = userFlags;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getAlbum() {
+			return album;
+		}
+
+		public String getPhotoCount() {
+			return photoCount;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public Boolean[] getUserFlags() {
+			return userFlags;
+		}
+	}
+
+}
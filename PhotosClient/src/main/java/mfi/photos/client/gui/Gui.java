@@ -38,9 +38,12 @@ import javax.swing.table.TableCellRenderer;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import mfi.photos.client.logic.EstimatedUploadTime;
 import mfi.photos.client.logic.Processor;
+import mfi.photos.client.logic.SyncView;
+import mfi.photos.client.model.SyncProgress;
 
-public class Gui extends JFrame implements ActionListener {
+public class Gui extends JFrame implements ActionListener, SyncView {
 
 	private static final long serialVersionUID = 1L;
 
@@ -62,11 +65,11 @@ public class Gui extends JFrame implements ActionListener {
 
 	private int userCount = 0;
 
-	private String messageText = "";
+	private volatile String messageText = "";
 
 	private final javax.swing.Timer timer = new javax.swing.Timer(100, this);
 
-	private boolean cancel = false;
+	private volatile boolean cancel = false;
 
 	private String mto = "";
 
@@ -337,6 +340,7 @@ public class Gui extends JFrame implements ActionListener {
 		return null;
 	}
 
+	@Override
 	public void addRow(String key, Boolean sync, String album, String photoCount, String status, Boolean[] userFlag) {
 		Object[] cols = new Object[] {};
 		cols = ArrayUtils.addAll(cols, key, sync, album, photoCount, status);
@@ -344,10 +348,27 @@ public class Gui extends JFrame implements ActionListener {
 		tableModel.addRow(cols);
 	}
 
+	@Override
 	public void viewMessage(String messageString) {
 		messageText = messageString;
 	}
 
+	@Override
+	public void viewProgress(SyncProgress progress) {
+
+		String msg = "Album " + progress.getAlbumNumber() + " von " + progress.getAlbumCount();
+		msg += ",   Datei " + progress.getAlbumFilesProcessed() + " von " + progress.getAlbumFilesToProcess();
+		msg += ",   Gesamt " + progress.getFilesProcessed() + " von " + progress.getFilesToProcess();
+		if (progress.getErrors() > 0) {
+			msg += ", " + progress.getErrors() + " Fehler";
+		}
+		if (progress.getEstimatedSeconds() != null) {
+			msg += "\n" + EstimatedUploadTime.formatSeconds(progress.getEstimatedSeconds()) + " verbleibend";
+		}
+		viewMessage(msg);
+	}
+
+	@Override
 	public void appendMessage(String messageString) {
 		messageText = messageText.trim();
 		if (StringUtils.isBlank(messageText)) {
@@ -357,15 +378,18 @@ public class Gui extends JFrame implements ActionListener {
 		}
 	}
 
+	@Override
 	public void showConnectionError() {
 		JOptionPane.showMessageDialog(new JFrame(), "Photos Server ist nicht erreichbar.", "Verbindungsfehler",
 				JOptionPane.WARNING_MESSAGE);
 	}
 
+	@Override
 	public void clearTable() {
 		tableModel.setRowCount(0);
 	}
 
+	@Override
 	public boolean isCancel() {
 		return cancel;
 	}
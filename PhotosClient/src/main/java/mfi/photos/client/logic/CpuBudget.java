@@ -0,0 +1,48 @@
+package mfi.photos.client.logic;
+
+/**
+ * Shares the cores between the busy Java workers of the pipeline and the
+ * running ffmpeg processes. An ffmpeg job gets its thread count when it
+ * starts: its fair share of the cores not used by Java workers, at most the
+ * cores not yet given away, at least one.
+ */
+public class CpuBudget {
+
+	private int cores;
+	private int activeJavaWorkers;
+	private int activeFfmpegJobs;
+	private int activeFfmpegThreads;
+
+	public CpuBudget(int cores) {
+		this.cores = Math.max(1, cores);
+	}
+
+	public synchronized void javaWorkerStarted() {
+		activeJavaWorkers++;
+	}
+
+	public synchronized void javaWorkerFinished() {
+		activeJavaWorkers--;
+	}
+
+	/**
+	 * @return threads for a starting ffmpeg job, to be given back with
+	 *         {@link #releaseFfmpegThreads(int)}
+	 */
+	public synchronized int acquireFfmpegThreads() {
+
+		int available = Math.max(0, cores - activeJavaWorkers);
+		int fairShare = available / (activeFfmpegJobs + 1);
+		int unused = available - activeFfmpegThreads;
+		int threads = Math.max(1, Math.min(fairShare, unused));
+		activeFfmpegJobs++;
+		activeFfmpegThreads += threads;
+		return threads;
+	}
+
+	public synchronized void releaseFfmpegThreads(int threads) {
+		activeFfmpegJobs--;
+		activeFfmpegThreads -= threads;
+	}
+
+}
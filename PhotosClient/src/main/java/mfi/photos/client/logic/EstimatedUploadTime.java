@@ -26,11 +26,11 @@ public class EstimatedUploadTime {
 		completed = false;
 	}
 
-	public void startUpload() {
+	public synchronized void startUpload() {
 		actualPhotoUploadStartTime = System.currentTimeMillis();
 	}
 
-	public void completedPhotoUpload(long fileSize) {
+	public synchronized void completedPhotoUpload(long fileSize) {
 		long duration = System.currentTimeMillis() - actualPhotoUploadStartTime;
 		double durMB = (1024d * 1024d / fileSize) * (duration);
 		megaByteProcessingDuration.add((long) durMB);
@@ -38,15 +38,21 @@ public class EstimatedUploadTime {
 		bytesProcessed += fileSize;
 	}
 
-	public void completedAlbumUpload() {
+	public synchronized void completedAlbumUpload() {
 		albumCompletedCount++;
 	}
 
-	public void completed() {
+	public synchronized void completed() {
 		completed = true;
 	}
 
-	public String estimatedTime() {
+	public synchronized String estimatedTime() {
+
+		Integer seconds = estimatedSeconds();
+		return seconds == null ? null : formatSeconds(seconds);
+	}
+
+	public synchronized Integer estimatedSeconds() {
 
 		if (megaByteProcessingDuration.size() < 5) {
 			return null;
@@ -70,7 +76,7 @@ public class EstimatedUploadTime {
 			System.out.println(seconds);
 		}
 
-		return formatSeconds(seconds);
+		return seconds;
 	}
 
 	public static String formatSeconds(int seconds) {
@@ -0,0 +1,173 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.stream.IntStream;
+
+/**
+ * Turns an image to exif orientation 1 by copying pixels, without any
+ * interpolation. Large images are copied in parallel row stripes.
+ */
+public class ImageOrientation {
+
+	private static final int PARALLEL_MIN_PIXELS = 1_000_000;
+	private static final int ROWS_PER_STRIPE = 64;
+
+	private ImageOrientation() {
+	}
+
+	/**
+	 * @return the image turned to orientation 1, the image itself for
+	 *         orientation 1 or unknown orientations, null if the raster layout is
+	 *         not supported
+	 */
+	public static BufferedImage remap(BufferedImage image, int orientation) {
+
+		if (orientation < 2 || orientation > 8) {
+			return image;
+		}
+		int pixelStride = pixelStride(image);
+		if (pixelStride == 0) {
+			return null;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean transposed = orientation >= 5;
+		BufferedImage target = new BufferedImage(transposed ? height : width, transposed ? width : height,
+				image.getType());
+		if (pixelStride(target) != pixelStride) {
+			return null;
+		}
+
+		DataBuffer source = image.getRaster().getDataBuffer();
+		DataBuffer destination = target.getRaster().getDataBuffer();
+		IntStream stripes = IntStream.range(0, (target.getHeight() + ROWS_PER_STRIPE - 1) / ROWS_PER_STRIPE);
+		if ((long) width * height >= PARALLEL_MIN_PIXELS) {
+			stripes = stripes.parallel();
+		}
+		stripes.forEach(stripe -> {
+			int fromRow = stripe * ROWS_PER_STRIPE;
+			int toRow = Math.min(fromRow + ROWS_PER_STRIPE, target.getHeight());
+			if (source instanceof DataBufferInt) {
+				remapRows(((DataBufferInt) source).getData(), ((DataBufferInt) destination).getData(), width,
+						height, target.getWidth(), orientation, fromRow, toRow);
+			} else {
+				remapRows(((DataBufferByte) source).getData(), ((DataBufferByte) destination).getData(),
+						pixelStride, width, height, target.getWidth(), orientation, fromRow, toRow);
+			}
+		});
+		return target;
+	}
+
+	private static void remapRows(int[] source, int[] destination, int width, int height, int targetWidth,
+			int orientation, int fromRow, int toRow) {
+
+		for (int row = fromRow; row < toRow; row++) {
+			int sourceIndex = firstSourceIndex(orientation, row, width, height);
+			int step = sourceStep(orientation, width);
+			int targetIndex = row * targetWidth;
+			for (int column = 0; column < targetWidth; column++) {
+				destination[targetIndex++] = source[sourceIndex];
+				sourceIndex += step;
+			}
+		}
+	}
+
+	private static void remapRows(byte[] source, byte[] destination, int pixelStride, int width, int height,
+			int targetWidth, int orientation, int fromRow, int toRow) {
+
+		for (int row = fromRow; row < toRow; row++) {
+			int sourceIndex = firstSourceIndex(orientation, row, width, height) * pixelStride;
+			int step = sourceStep(orientation, width) * pixelStride;
+			int targetIndex = row * targetWidth * pixelStride;
+			for (int column = 0; column < targetWidth; column++) {
+				for (int b = 0; b < pixelStride; b++) {
+					destination[targetIndex++] = source[sourceIndex + b];
+				}
+				sourceIndex += step;
+			}
+		}
+	}
+
+	/**
+	 * Source pixel index of the first pixel of a target row.
+	 */
+	private static int firstSourceIndex(int orientation, int row, int width, int height) {
+
+		switch (orientation) {
+		case 2: // flip x
+			return row * width + width - 1;
+		case 3: // rotate 180
+			return (height - 1 - row) * width + width - 1;
+		case 4: // flip y
+			return (height - 1 - row) * width;
+		case 5: // transpose
+			return row;
+		case 6: // rotate 90 clockwise
+			return (height - 1) * width + row;
+		case 7: // transverse
+			return (height - 1) * width + width - 1 - row;
+		case 8: // rotate 90 counterclockwise
+			return width - 1 - row;
+		default:
+			return row * width;
+		}
+	}
+
+	/**
+	 * Source index distance between two neighboring pixels of a target row.
+	 */
+	private static int sourceStep(int orientation, int width) {
+
+		switch (orientation) {
+		case 2:
+		case 3:
+			return -1;
+		case 5:
+		case 8:
+			return width;
+		case 6:
+		case 7:
+			return -width;
+		default:
+			return 1;
+		}
+	}
+
+	/**
+	 * @return pixel stride in array elements for plain, unshared int or byte
+	 *         rasters of a standard image type, 0 otherwise
+	 */
+	private static int pixelStride(BufferedImage image) {
+
+		Raster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		DataBuffer dataBuffer = raster.getDataBuffer();
+		if (image.getType() == BufferedImage.TYPE_CUSTOM || raster.getParent() != null
+				|| dataBuffer.getNumBanks() != 1 || dataBuffer.getOffset() != 0
+				|| raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+			return 0;
+		}
+		if (dataBuffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel
+				&& ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == image.getWidth()) {
+			return 1;
+		}
+		if (dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+			ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+			int pixelStride = componentSampleModel.getPixelStride();
+			if (componentSampleModel.getScanlineStride() == image.getWidth() * pixelStride
+					&& pixelStride == componentSampleModel.getNumBands()) {
+				return pixelStride;
+			}
+		}
+		return 0;
+	}
+
+}
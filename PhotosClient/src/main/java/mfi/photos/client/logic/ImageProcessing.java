@@ -3,120 +3,271 @@ package mfi.photos.client.logic;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.Fraction;
 
-import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.lang.StreamReader;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataException;
 import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
 import com.drew.metadata.jpeg.JpegDirectory;
 
 import mfi.photos.client.model.Dimension;
 import mfi.photos.client.model.Photo;
-import net.bramp.ffmpeg.FFmpeg;
-import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
-import net.bramp.ffmpeg.job.FFmpegJob;
+import net.bramp.ffmpeg.probe.FFmpegFormat;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import net.bramp.ffmpeg.probe.FFmpegStream;
-import net.bramp.ffmpeg.progress.Progress;
 import net.bramp.ffmpeg.progress.ProgressListener;
+import net.bramp.ffmpeg.progress.ProgressParser;
+import net.bramp.ffmpeg.progress.TcpProgressParser;
 
 public class ImageProcessing {
 
-	private static final long BASE_VIDEO_BITRATE = 2_621_440L;
+	// bitrate model: bits per pixel and frame at the reference frame rate,
+	// about 2.5 Mbit/s for 720p with 30 fps
+	private static final double VIDEO_BITS_PER_PIXEL = 0.09;
+	private static final double REFERENCE_FPS = 30.0;
+	// higher frame rates need less bits per frame, consecutive frames differ less
+	private static final double FPS_EXPONENT = 0.75;
+	// fewer pixels need less bits, but not proportionally
+	private static final double PIXEL_EXPONENT = 0.75;
+	// short clips are mostly snapshots of a scene with little motion, an
+	// average bitrate encoding spends its bits anyway: less for clips shorter
+	// than the reference duration, at least the min. factor
+	private static final double REFERENCE_DURATION_SECONDS = 30.0;
+	private static final double DURATION_EXPONENT = 0.2;
+	private static final double MIN_DURATION_FACTOR = 0.7;
+	// codecs needing about a third less bits than h264 for the same quality
+	private static final List<String> EFFICIENT_CODECS = Arrays.asList("hevc", "vp9", "av1");
+	private static final double EFFICIENT_CODEC_FACTOR = 1.5;
+	private static final long MIN_VIDEO_BITRATE = 400_000L;
+	private static final long AUDIO_BITRATE = 65_536L;
 	private static final String DEST_PIXEL_FORMAT = "yuv420p";
 	private static final List<String> NON_SUPPORTED_PIXEL_FORMATS = new LinkedList<>();
 	static {
 		NON_SUPPORTED_PIXEL_FORMATS.add("yuvj422p"); // lower case!
 	}
 
+	private static final String TEMP_PREFIX_RESIZED_VIDEO = "photos_resized";
+	private static final String TEMP_PREFIX_HEIC = "heic_image";
+	private static final String TEMP_PREFIX_SEGMENTS = "photos_segments";
+	private static final String SEGMENT_PREFIX = "segment_";
+	private static final String TRANSCODED_SEGMENT_PREFIX = "transcoded_";
+
+	// expected temp file sizes, reserved in the temp workspace
+	private static final int HEIC_JPEG_SIZE_FACTOR = 3;
+	private static final double VIDEO_SIZE_MARGIN = 1.1;
+
+	private static final int PREVIEW_SIZE = 720;
+	// smaller side to the given pixels, even sizes, never changes the aspect ratio
+	private static final String FRAME_SCALE_FILTER = "scale='if(gt(iw,ih),-2,%1$d)':'if(gt(iw,ih),%1$d,-2)'";
+	// larger and smaller side of the target size in the orientation of the
+	// rotated frames, ffprobe 5 and later has no rotate tag any more
+	private static final String VIDEO_SCALE_FILTER = "scale='if(gt(iw,ih),%1$d,%2$d)':'if(gt(iw,ih),%2$d,%1$d)'";
+
+	// max. relative difference of the aspect ratios of image and exif thumbnail
+	private static final double EXIF_THUMBNAIL_ASPECT_TOLERANCE = 0.02;
+
 	private static List<String> NON_NATIVE_PHOTO_FORMATS = new ArrayList<>();
 	static {
 		NON_NATIVE_PHOTO_FORMATS.add("heic");
 	}
 
 	private String ffmpegDir;
-	private String tempFileDir;
+	private TempWorkspace tempWorkspace;
+	private VideoEncoding videoEncoding;
+	private SyncMetrics metrics;
+	private JpegEncoder jpegEncoder;
+
+	private BufferedImage playSymbolImage;
+	private Map<Integer, BufferedImage> playSymbols = new ConcurrentHashMap<>();
 
-	public ImageProcessing(String ffmpegDir, String tempFilePath) {
+	public ImageProcessing(String ffmpegDir, TempWorkspace tempWorkspace, SyncMetrics metrics,
+			JpegEncoder jpegEncoder, VideoEncoding videoEncoding) {
 		this.ffmpegDir = ffmpegDir;
-		this.tempFileDir = tempFilePath;
+		this.tempWorkspace = tempWorkspace;
+		this.metrics = metrics;
+		this.jpegEncoder = jpegEncoder;
+		this.videoEncoding = videoEncoding;
 	}
 
 	public ResizedImage createPreviewImage(File photoFile) throws IOException, InterruptedException {
+		return composePreviewImage(extractFrame(photoFile, PREVIEW_SIZE));
+	}
 
-		String ffmpegPath = ffmpegDir + "/ffmpeg";
-		String inPath = photoFile.getAbsolutePath();
-		String outPath = tempFileDir + "/photos_frame.bmp";
-
-		FileUtils.deleteQuietly(new File(outPath));
+	/**
+	 * First frame of a video, scaled by ffmpeg so its smaller side has the
+	 * given pixels and piped as ppm, without a temp file.
+	 */
+	private BufferedImage extractFrame(File videoFile, int pixelSmallerSide)
+			throws IOException, InterruptedException {
+
+		FFmpegBuilder builder = new FFmpegBuilder().setInput(videoFile.getAbsolutePath());
+		addFrameOutput(builder, pixelSmallerSide);
+		long start = metrics.start();
+		BufferedImage frame = runFFmpeg(builder, null);
+		metrics.stop(SyncMetrics.Stage.FFMPEG, start, videoFile.length());
+		if (frame == null) {
+			throw new IOException("error creating single frame: " + videoFile.getAbsolutePath());
+		}
+		return frame;
+	}
 
-		ProcessBuilder pb = new ProcessBuilder(ffmpegPath, "-i", inPath, "-ss", "00:00:00.000", "-vframes",
-				"1", outPath);
-		Process p = pb.start();
+	private static void addFrameOutput(FFmpegBuilder builder, int pixelSmallerSide) {
+		builder.addStdoutOutput() //
+				.setFormat("image2pipe") //
+				.setVideoCodec("ppm") //
+				.setFrames(1) //
+				.setVideoFilter(String.format(FRAME_SCALE_FILTER, pixelSmallerSide)) //
+				.disableAudio() //
+				.disableSubtitle() //
+				.done();
+	}
 
-		if (p.waitFor() > 1) {
-			throw new IOException("error creating single frame: " + p.exitValue());
+	/**
+	 * Runs ffmpeg with all outputs of the builder, the input is decoded once.
+	 *
+	 * @return the ppm frame written to stdout by one of the outputs, null if
+	 *         there is no such output
+	 */
+	private BufferedImage runFFmpeg(FFmpegBuilder builder, ProgressListener progressListener)
+			throws IOException, InterruptedException {
+
+		// bramp's FFmpeg.run consumes stdout itself, so the process is run here
+		ProgressParser progressParser = null;
+		if (progressListener != null) {
+			try {
+				progressParser = new TcpProgressParser(progressListener);
+			} catch (URISyntaxException e) {
+				throw new IOException(e);
+			}
+			progressParser.start();
+			builder.addProgress(progressParser.getUri());
 		}
-		StringBuilder sb = readProcessResponse(p);
+		List<String> command = new ArrayList<>();
+		command.add(ffmpegDir + "/ffmpeg");
+		command.addAll(builder.build());
 
-		if (!new File(outPath).exists()) {
-			throw new IOException("error creating single frame: " + sb.toString());
+		try {
+			Process p = new ProcessBuilder(command).start();
+			StringBuilder errors = new StringBuilder();
+			Thread errorReader = readProcessErrors(p, errors);
+
+			BufferedImage frame;
+			try (InputStream in = new BufferedInputStream(p.getInputStream())) {
+				frame = PpmFrameReader.read(in);
+				// the other outputs may still be running
+				IOUtils.skip(in, Long.MAX_VALUE);
+			} catch (IOException e) {
+				p.destroy();
+				throw e;
+			} finally {
+				p.waitFor();
+				errorReader.join();
+			}
+			if (p.exitValue() != 0) {
+				throw new IOException("error running ffmpeg: " + p.exitValue() + " " + errors.toString());
+			}
+			return frame;
+		} finally {
+			if (progressParser != null) {
+				progressParser.stop();
+			}
 		}
+	}
 
-		BufferedImage large = ImageIO.read(new File(tempFileDir + "/photos_frame.bmp"));
-		BufferedImage small = readPlaySymbolImage();
+	/**
+	 * Drains stderr of a process in the background, a full pipe would block
+	 * the process.
+	 */
+	private static Thread readProcessErrors(Process p, StringBuilder errors) {
+
+		Thread thread = new Thread(() -> {
+			try (BufferedReader er = new BufferedReader(new InputStreamReader(p.getErrorStream()))) {
+				String x;
+				while ((x = er.readLine()) != null) {
+					errors.append(x + "\n");
+				}
+			} catch (IOException e) {
+				errors.append(e.getMessage());
+			}
+		}, "ffmpeg-stderr");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
 
-		Dimension newSizeLarge = calculateExactSize(new Dimension(large.getWidth(), large.getHeight()), 720);
-		ResizedImage resizedFrame = resizeImage(large, newSizeLarge, false);
-		BufferedImage largeResized = ImageIO.read(new ByteArrayInputStream(resizedFrame.getBytes()));
+	/**
+	 * Scales a video frame to preview size and draws the play symbol on it.
+	 */
+	ResizedImage composePreviewImage(BufferedImage large) throws IOException {
 
-		int pixelsPlaySymbol = Math.min(resizedFrame.getHeight(), resizedFrame.getWidth()) / 7 * 3;
-		ResizedImage resizedPlaySymbol = resizeImage(small, pixelsPlaySymbol, true);
-		BufferedImage smallResized = ImageIO.read(new ByteArrayInputStream(resizedPlaySymbol.getBytes()));
+		Dimension newSizeLarge = calculateExactSize(new Dimension(large.getWidth(), large.getHeight()),
+				PREVIEW_SIZE);
 
-		BufferedImage combined = new BufferedImage(resizedFrame.getWidth(), resizedFrame.getHeight(),
-				BufferedImage.TYPE_INT_RGB);
+		long start = metrics.start();
+		// scaled frame is a new raster, the play symbol is drawn right on it
+		BufferedImage combined = ImageScaler.scale(large, newSizeLarge.getWidth(), newSizeLarge.getHeight(),
+				false);
+		BufferedImage playSymbol = lookupPlaySymbol(
+				Math.min(newSizeLarge.getHeight(), newSizeLarge.getWidth()) / 7 * 3);
 		Graphics g = combined.getGraphics();
-		g.drawImage(largeResized, 0, 0, null);
-		g.drawImage(smallResized, (resizedFrame.getWidth() - resizedPlaySymbol.getWidth()) / 2,
-				(resizedFrame.getHeight() - resizedPlaySymbol.getHeight()) / 2, null);
-
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		ImageIO.write(combined, Photo.DEST_PIC_DATATYPE, baos);
-		baos.flush();
-		byte[] imageInByte = baos.toByteArray();
+		g.drawImage(playSymbol, (combined.getWidth() - playSymbol.getWidth()) / 2,
+				(combined.getHeight() - playSymbol.getHeight()) / 2, null);
+		g.dispose();
+		metrics.stop(SyncMetrics.Stage.RESIZE, start, 0);
+
 		ResizedImage previewImage = new ResizedImage();
-		previewImage.setBytes(imageInByte);
-		previewImage.setHeight(resizedFrame.getHeight());
-		previewImage.setWidth(resizedFrame.getWidth());
-		baos.close();
+		encode(combined, previewImage);
+		previewImage.setHeight(newSizeLarge.getHeight());
+		previewImage.setWidth(newSizeLarge.getWidth());
+		// raster for the thumbnail, saves decoding the preview again
+		previewImage.setImage(combined);
 		return previewImage;
 	}
 
@@ -140,13 +291,17 @@ public class ImageProcessing {
 		return sb;
 	}
 
-	public File resizeVideo(Photo photo, int basePixelSize) throws IOException, InterruptedException {
-
-		FileUtils.deleteQuietly(new File(tempFileDir + "/photos_resized.mp4"));
+	/**
+	 * @return the transcoded video in the job directory, or the original file
+	 *         if it can be used as it is
+	 */
+	public TranscodedVideo resizeVideo(Photo photo, int basePixelSize, TempWorkspace.JobDir workDir)
+			throws IOException, InterruptedException {
 
 		FFprobe ffprobe = new FFprobe(ffmpegDir + "/ffprobe");
-		FFmpeg ffmpeg = new FFmpeg(ffmpegDir + "/ffmpeg");
+		long start = metrics.start();
 		FFmpegProbeResult probeResult = ffprobe.probe(photo.getLocalFile().getAbsolutePath());
+		metrics.stop(SyncMetrics.Stage.FFPROBE, start, 0);
 		FFmpegStream streamVideo = null;
 		for (int i = 0; i < probeResult.getStreams().size(); i++) {
 			if (probeResult.getStreams().get(i).height > 0 && probeResult.getStreams().get(i).width > 0) {
@@ -158,72 +313,394 @@ public class ImageProcessing {
 			throw new IOException("No video stream found: " + photo.getLocalFile().getAbsolutePath());
 		}
 
+		Dimension sourceSize = new Dimension(streamVideo.width, streamVideo.height);
 		Dimension newSizeLarge = calculateExactSize(new Dimension(streamVideo.width, streamVideo.height),
 				basePixelSize);
 		if (streamVideo.tags.containsKey("rotate")) {
 			if (streamVideo.tags.get("rotate").equals("90") || streamVideo.tags.get("rotate").equals("270")) {
+				sourceSize.rotate();
 				newSizeLarge.rotate();
 			}
 		}
 
 		String codec = StringUtils.remove(streamVideo.codec_name + " " + streamVideo.codec_long_name, ".");
 
-		long bitrate = streamVideo.bit_rate > 0 ? streamVideo.bit_rate : streamVideo.max_bit_rate;
-		long targetBitrate = calculateTargetBitrate();
+		long bitrate = calculateSourceBitrate(streamVideo, probeResult.getFormat());
+		double duration = probeResult.getFormat().duration;
+		long targetBitrate = calculateTargetBitrate(streamVideo, duration, bitrate, newSizeLarge);
+		boolean convertPixelFormat = NON_SUPPORTED_PIXEL_FORMATS.contains(streamVideo.pix_fmt.toLowerCase());
 
-		if (bitrate <= targetBitrate && StringUtils.endsWithIgnoreCase(photo.getLocalFile().getName(), ".mp4")
-				&& StringUtils.containsIgnoreCase(codec, "H264")) {
-			// same format, lower bitrate ; keep file
-			return photo.getLocalFile();
+		// not larger than the target size and not more bytes than a transcoding
+		// without the cap by the source
+		boolean fitsSize = sourceSize.getWidth() <= newSizeLarge.getWidth()
+				&& sourceSize.getHeight() <= newSizeLarge.getHeight();
+		long modelBitrate = calculateTargetBitrate(streamVideo, duration, 0, newSizeLarge);
+		if (fitsSize && bitrate > 0 && bitrate <= modelBitrate && StringUtils.containsIgnoreCase(codec, "H264")
+				&& !convertPixelFormat) {
+			if (StringUtils.endsWithIgnoreCase(photo.getLocalFile().getName(), ".mp4")) {
+				// same format, lower bitrate ; keep file
+				return new TranscodedVideo(photo.getLocalFile(), createPreviewImage(photo.getLocalFile()));
+			}
+			// video stream fits, only the container differs
+			return remuxVideo(photo, probeResult, workDir);
 		}
 
-		boolean convertPixelFormat = NON_SUPPORTED_PIXEL_FORMATS.contains(streamVideo.pix_fmt.toLowerCase());
+		long expectedBytes = (long) ((targetBitrate + AUDIO_BITRATE) / 8 * duration * VIDEO_SIZE_MARGIN);
+		// the whole room of the job at once, segments are created next to the
+		// result: split copies as large as the original, transcoded segments as
+		// large as the result
+		long reservedBytes = videoEncoding.isSegmented(duration)
+				? expectedBytes + photo.getLocalFileSize() + expectedBytes : expectedBytes;
+		File resizedFile = workDir.newFile(TEMP_PREFIX_RESIZED_VIDEO, "." + Photo.DEST_VID_DATATYPE,
+				reservedBytes);
+
+		VideoEncoding.Job encodingJob = videoEncoding.start(duration);
+		System.out.println("Video: preset " + encodingJob.getPreset() + ", threads " + encodingJob.getThreads()
+				+ (encodingJob.getParallelSegments() > 1 ? ", segments " + encodingJob.getParallelSegments() : ""));
+		BufferedImage frame;
+		boolean success = false;
+		try {
+			start = metrics.start();
+			if (encodingJob.getParallelSegments() > 1) {
+				frame = transcodeSegments(photo, probeResult, resizedFile, newSizeLarge, targetBitrate,
+						convertPixelFormat, encodingJob);
+			} else {
+				FFmpegBuilder fmpegBuilder = new FFmpegBuilder().setInput(probeResult) //
+						.overrideOutputFiles(true);
+				addVideoOutput(fmpegBuilder, resizedFile, newSizeLarge, targetBitrate, convertPixelFormat,
+						encodingJob, encodingJob.getThreads()) //
+								.setAudioChannels(1) //
+								.setAudioCodec("aac") //
+								.setAudioBitRate(AUDIO_BITRATE) //
+								.done();
+				// preview frame from the same decoding, scaled from the source
+				addFrameOutput(fmpegBuilder, PREVIEW_SIZE);
+				frame = runFFmpeg(fmpegBuilder, new VideoProgress(duration, 1).listener(0));
+			}
+			metrics.stop(SyncMetrics.Stage.FFMPEG, start, photo.getLocalFile().length());
+			if (frame == null) {
+				throw new IOException("error creating single frame: " + photo.getLocalFile().getAbsolutePath());
+			}
+			success = true;
+		} finally {
+			encodingJob.finish(success);
+			if (!success) {
+				FileUtils.deleteQuietly(resizedFile);
+			}
+		}
+		return new TranscodedVideo(resizedFile, composePreviewImage(frame));
+	}
 
-		FFmpegOutputBuilder outputBuilder = new FFmpegBuilder().setInput(probeResult) //
-				.overrideOutputFiles(true) //
-				.addOutput(tempFileDir + "/photos_resized.mp4") //
+	/**
+	 * h264 video output in the target size and bitrate.
+	 */
+	private static FFmpegOutputBuilder addVideoOutput(FFmpegBuilder builder, File outputFile, Dimension size,
+			long targetBitrate, boolean convertPixelFormat, VideoEncoding.Job encodingJob, int threads) {
+
+		FFmpegOutputBuilder outputBuilder = builder.addOutput(outputFile.getAbsolutePath()) //
 				.setFormat("mp4") //
 				.disableSubtitle() //
-				.setAudioChannels(1) //
-				.setAudioCodec("aac") //
-				.setAudioBitRate(65536) //
 				.setVideoCodec("h264") //
-				.setVideoResolution(newSizeLarge.getWidth(), newSizeLarge.getHeight()) //
-				.setVideoBitRate(targetBitrate) //
-				.addExtraArgs("-preset", "slow") //
+				.setVideoFilter(String.format(VIDEO_SCALE_FILTER, Math.max(size.getWidth(), size.getHeight()),
+						Math.min(size.getWidth(), size.getHeight()))) //
+				.addExtraArgs("-preset", encodingJob.getPreset()) //
+				.addExtraArgs("-threads", String.valueOf(threads)) //
 				.addExtraArgs("-profile:v", "high", "-level", "4.2"); //
+		if (encodingJob.getCrf() > 0) {
+			// constant quality, capped at the target bitrate
+			outputBuilder.addExtraArgs("-crf", String.valueOf(encodingJob.getCrf()), "-maxrate",
+					String.valueOf(targetBitrate), "-bufsize", String.valueOf(targetBitrate * 2));
+		} else {
+			outputBuilder.setVideoBitRate(targetBitrate);
+		}
 		if (convertPixelFormat) {
 			outputBuilder.addExtraArgs("-pix_fmt", DEST_PIXEL_FORMAT);
 		}
-		FFmpegBuilder fmpegBuilder = outputBuilder.done();
+		return outputBuilder;
+	}
 
-		FFmpegExecutor executor = new FFmpegExecutor(ffmpeg, ffprobe);
-		FFmpegJob job = executor.createJob(fmpegBuilder, new ProgressListener() {
-			final double duration_ms = probeResult.getFormat().duration * TimeUnit.SECONDS.toMillis(10L);
+	/**
+	 * Splits the video at keyframes without encoding, transcodes the segments
+	 * in parallel and concatenates them without encoding again. The audio is
+	 * transcoded from the original while concatenating.
+	 *
+	 * @return the preview frame, from the transcoding of the first segment
+	 */
+	private BufferedImage transcodeSegments(Photo photo, FFmpegProbeResult probeResult, File resizedFile,
+			Dimension size, long targetBitrate, boolean convertPixelFormat, VideoEncoding.Job encodingJob)
+			throws IOException, InterruptedException {
+
+		// reserved together with the result
+		File segmentDir = Files.createTempDirectory(resizedFile.getParentFile().toPath(), TEMP_PREFIX_SEGMENTS)
+				.toFile();
+		try {
+			FFmpegBuilder splitBuilder = new FFmpegBuilder().setInput(probeResult) //
+					.overrideOutputFiles(true);
+			splitBuilder.addOutput(new File(segmentDir, SEGMENT_PREFIX + "%03d.mov").getAbsolutePath()) //
+					.setFormat("segment") //
+					.setVideoCodec("copy") //
+					.disableAudio() //
+					.disableSubtitle() //
+					// mov keeps the rotation of the original
+					.addExtraArgs("-map", "0:v:0", "-segment_time", String.valueOf(encodingJob.getSegmentSeconds()),
+							"-segment_format", "mov", "-reset_timestamps", "1") //
+					.done();
+			runFFmpeg(splitBuilder, null);
+
+			File[] segments = segmentDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX));
+			if (segments == null || segments.length == 0) {
+				throw new IOException("error splitting video: " + photo.getLocalFile().getAbsolutePath());
+			}
+			Arrays.sort(segments);
+
+			VideoProgress progress = new VideoProgress(probeResult.getFormat().duration, segments.length);
+			List<File> transcodedSegments = new LinkedList<>();
+			List<Callable<BufferedImage>> tasks = new LinkedList<>();
+			for (int i = 0; i < segments.length; i++) {
+				File transcodedSegment = new File(segmentDir, TRANSCODED_SEGMENT_PREFIX + i + ".mp4");
+				transcodedSegments.add(transcodedSegment);
+				FFmpegBuilder segmentBuilder = new FFmpegBuilder().setInput(segments[i].getAbsolutePath()) //
+						.overrideOutputFiles(true);
+				addVideoOutput(segmentBuilder, transcodedSegment, size, targetBitrate, convertPixelFormat,
+						encodingJob, encodingJob.getSegmentThreads()) //
+								.disableAudio() //
+								.done();
+				if (i == 0) {
+					addFrameOutput(segmentBuilder, PREVIEW_SIZE);
+				}
+				ProgressListener listener = progress.listener(i);
+				tasks.add(() -> runFFmpeg(segmentBuilder, listener));
+			}
+			BufferedImage frame = runParallel(tasks, encodingJob.getParallelSegments()).get(0);
 
-			@Override
-			public void progress(Progress progress) {
-				double percentageDouble = progress.out_time_ms / duration_ms;
-				int percentage = (int) percentageDouble;
-				System.out.println(percentage);
+			File concatList = new File(segmentDir, "concat.txt");
+			StringBuilder sb = new StringBuilder();
+			for (File transcodedSegment : transcodedSegments) {
+				sb.append("file '" + transcodedSegment.getAbsolutePath().replace("'", "'\\''") + "'\n");
 			}
+			FileUtils.writeStringToFile(concatList, sb.toString(), StandardCharsets.UTF_8);
+
+			FFmpegBuilder concatBuilder = new FFmpegBuilder() //
+					.overrideOutputFiles(true) //
+					.setFormat("concat") //
+					.addExtraArgs("-safe", "0") //
+					.addInput(concatList.getAbsolutePath()) //
+					.addInput(photo.getLocalFile().getAbsolutePath());
+			concatBuilder.addOutput(resizedFile.getAbsolutePath()) //
+					.setFormat("mp4") //
+					.disableSubtitle() //
+					.setVideoCodec("copy") //
+					.setAudioChannels(1) //
+					.setAudioCodec("aac") //
+					.setAudioBitRate(AUDIO_BITRATE) //
+					.addExtraArgs("-map", "0:v:0", "-map", "1:a:0?") //
+					.done();
+			runFFmpeg(concatBuilder, null);
+			return frame;
+		} finally {
+			FileUtils.deleteQuietly(segmentDir);
+		}
+	}
+
+	/**
+	 * Runs the ffmpeg tasks with the given parallelism, waits for all of them.
+	 *
+	 * @return the results in the order of the tasks
+	 */
+	private static List<BufferedImage> runParallel(List<Callable<BufferedImage>> tasks, int parallelism)
+			throws IOException, InterruptedException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "ffmpeg-segment");
+			thread.setDaemon(true);
+			return thread;
 		});
-		job.run();
-		return new File(tempFileDir + "/photos_resized.mp4");
+		try {
+			List<BufferedImage> results = new LinkedList<>();
+			for (Future<BufferedImage> future : executor.invokeAll(tasks)) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Progress of a transcoding as one percentage, summed up over its segments.
+	 */
+	private static class VideoProgress {
+
+		private double durationUnits;
+		private long[] outTimes;
+		private int lastPercentage = -1;
+
+		private VideoProgress(double durationSeconds, int segments) {
+			// out_time_ms is in microseconds, percentage = out_time / duration_ms / 10
+			durationUnits = durationSeconds * TimeUnit.SECONDS.toMillis(10L);
+			outTimes = new long[segments];
+		}
+
+		private ProgressListener listener(int segment) {
+			return progress -> report(segment, progress.out_time_ms);
+		}
+
+		private synchronized void report(int segment, long outTime) {
+			outTimes[segment] = outTime;
+			long sum = 0;
+			for (long time : outTimes) {
+				sum += time;
+			}
+			int percentage = (int) (sum / durationUnits);
+			if (percentage != lastPercentage) {
+				lastPercentage = percentage;
+				System.out.println(percentage);
+			}
+		}
+	}
+
+	/**
+	 * Copies the video stream into mp4 without encoding, the audio stream too
+	 * if it is aac. The preview frame is extracted separately, a frame output
+	 * in the same run would decode the whole video.
+	 */
+	private TranscodedVideo remuxVideo(Photo photo, FFmpegProbeResult probeResult, TempWorkspace.JobDir workDir)
+			throws IOException, InterruptedException {
+
+		FFmpegStream streamAudio = null;
+		for (FFmpegStream stream : probeResult.getStreams()) {
+			if (stream.codec_type == FFmpegStream.CodecType.AUDIO) {
+				streamAudio = stream;
+				break;
+			}
+		}
+
+		File remuxedFile = workDir.newFile(TEMP_PREFIX_RESIZED_VIDEO, "." + Photo.DEST_VID_DATATYPE,
+				photo.getLocalFileSize());
+		FFmpegOutputBuilder outputBuilder = new FFmpegBuilder().setInput(probeResult) //
+				.overrideOutputFiles(true) //
+				.addOutput(remuxedFile.getAbsolutePath()) //
+				.setFormat("mp4") //
+				.disableSubtitle() //
+				.setVideoCodec("copy");
+		if (streamAudio == null) {
+			outputBuilder.disableAudio();
+		} else if (StringUtils.equalsIgnoreCase(streamAudio.codec_name, "aac")) {
+			outputBuilder.setAudioCodec("copy");
+		} else {
+			outputBuilder.setAudioChannels(1) //
+					.setAudioCodec("aac") //
+					.setAudioBitRate(AUDIO_BITRATE);
+		}
+
+		try {
+			long start = metrics.start();
+			runFFmpeg(outputBuilder.done(), null);
+			metrics.stop(SyncMetrics.Stage.FFMPEG, start, photo.getLocalFile().length());
+		} catch (IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(remuxedFile);
+			throw e;
+		}
+		return new TranscodedVideo(remuxedFile, createPreviewImage(photo.getLocalFile()));
 	}
 
-	private long calculateTargetBitrate() {
-		return BASE_VIDEO_BITRATE;
+	/**
+	 * Bitrate for the target size, the frame rate and the duration of the
+	 * source, never more than the source needs for the target size. Source
+	 * bitrate 0 for the model bitrate without that cap.
+	 */
+	static long calculateTargetBitrate(FFmpegStream streamVideo, double durationSeconds, long sourceBitrate,
+			Dimension targetSize) {
+
+		double fps = frameRate(streamVideo);
+		double targetPixels = (double) targetSize.getWidth() * targetSize.getHeight();
+		double target = VIDEO_BITS_PER_PIXEL * targetPixels * REFERENCE_FPS
+				* Math.pow(fps / REFERENCE_FPS, FPS_EXPONENT);
+		if (durationSeconds > 0) {
+			target *= Math.max(MIN_DURATION_FACTOR,
+					Math.min(1.0, Math.pow(durationSeconds / REFERENCE_DURATION_SECONDS, DURATION_EXPONENT)));
+		}
+
+		if (sourceBitrate > 0) {
+			// low motion or already small sources need less
+			double sourcePixels = (double) streamVideo.width * streamVideo.height;
+			double sourceAsH264 = sourceBitrate
+					* (EFFICIENT_CODECS.contains(StringUtils.lowerCase(streamVideo.codec_name))
+							? EFFICIENT_CODEC_FACTOR : 1.0);
+			target = Math.min(target, sourceAsH264 * Math.min(1.0, Math.pow(targetPixels / sourcePixels,
+					PIXEL_EXPONENT)));
+		}
+		return Math.max(MIN_VIDEO_BITRATE, (long) target);
+	}
+
+	/**
+	 * Video bitrate of the source, from the container without audio if the
+	 * stream has none. 0 if unknown.
+	 */
+	private static long calculateSourceBitrate(FFmpegStream streamVideo, FFmpegFormat format) {
+
+		if (streamVideo.bit_rate > 0) {
+			return streamVideo.bit_rate;
+		}
+		if (streamVideo.max_bit_rate > 0) {
+			return streamVideo.max_bit_rate;
+		}
+		long formatBitrate = format.bit_rate;
+		if (formatBitrate <= 0 && format.size > 0 && format.duration > 0) {
+			formatBitrate = (long) (format.size * 8 / format.duration);
+		}
+		return Math.max(0, formatBitrate - AUDIO_BITRATE);
+	}
+
+	private static double frameRate(FFmpegStream streamVideo) {
+		for (Fraction rate : Arrays.asList(streamVideo.avg_frame_rate, streamVideo.r_frame_rate)) {
+			if (rate != null && rate.getDenominator() != 0 && rate.doubleValue() > 0) {
+				return rate.doubleValue();
+			}
+		}
+		return REFERENCE_FPS;
 	}
 
 	public BufferedImage rotateImageToZeroDegree(Photo photo)
 			throws IOException, MetadataException, ImageProcessingException, Exception {
+		return rotateImageToZeroDegree(photo, 0);
+	}
+
+	public BufferedImage rotateImageToZeroDegree(Photo photo, int minPixelSmallerSide)
+			throws IOException, MetadataException, ImageProcessingException, Exception {
+		try (TempWorkspace.JobDir workDir = tempWorkspace.open();
+				ImageSource source = readImageSource(photo, workDir)) {
+			return rotateImageToZeroDegree(source, minPixelSmallerSide);
+		}
+	}
+
+	/**
+	 * Reads the original once, formats not decodable by ImageIO are converted
+	 * to jpeg first.
+	 */
+	public ImageSource readImageSource(Photo photo, TempWorkspace.JobDir workDir)
+			throws IOException, InterruptedException {
+
+		boolean converted = NON_NATIVE_PHOTO_FORMATS
+				.contains(StringUtils.substringAfterLast(photo.getLocalFile().getName(), ".").toLowerCase());
+		if (!converted) {
+			long start = metrics.start();
+			ImageSource source = ImageSource.read(photo.getLocalFile());
+			metrics.stop(SyncMetrics.Stage.READ, start, source.getLength());
+			return source;
+		}
 
-		File fileToProcess = null;
-		if (NON_NATIVE_PHOTO_FORMATS.contains(
-				StringUtils.substringAfterLast(photo.getLocalFile().getName(), ".").toLowerCase())) {
-			String outPath = tempFileDir + "/heic_image.jpg";
-			fileToProcess = new File(outPath);
+		File fileToProcess = workDir.newFile(TEMP_PREFIX_HEIC, ".jpg",
+				photo.getLocalFileSize() * HEIC_JPEG_SIZE_FACTOR);
+		try {
+			String outPath = fileToProcess.getAbsolutePath();
 			ProcessBuilder pb = new ProcessBuilder("sips", "-s", "format", "jpeg",
 					photo.getLocalFile().getAbsolutePath(), "--out", outPath);
 			Process p = pb.start();
@@ -231,26 +708,140 @@ public class ImageProcessing {
 				throw new IOException("error creating single frame: " + p.exitValue());
 			}
 			StringBuilder sb = readProcessResponse(p);
-			if (!new File(outPath).exists()) {
+			if (!fileToProcess.exists()) {
 				throw new IOException("error transforming heic file: " + sb.toString());
 			}
-		} else {
-			fileToProcess = photo.getLocalFile();
+			return ImageSource.read(fileToProcess);
+		} finally {
+			FileUtils.deleteQuietly(fileToProcess);
 		}
+	}
 
-		BufferedImage bufferedImage = ImageIO.read(fileToProcess);
-		BufferedImage transformedImage;
+	/**
+	 * @param minPixelSmallerSide
+	 *            pixels of the smaller side needed at least, the image is
+	 *            decoded subsampled if it is at least twice as large. 0 for full
+	 *            resolution.
+	 */
+	public BufferedImage rotateImageToZeroDegree(ImageSource source, int minPixelSmallerSide)
+			throws IOException, MetadataException, ImageProcessingException, Exception {
 
-		ImageInformation imageInformation = readImageInformation(fileToProcess);
-		if (imageInformation != null) {
-			AffineTransform affineTransform = getExifTransformation(imageInformation);
-			transformedImage = transformImage(bufferedImage, affineTransform);
-		} else {
-			transformedImage = bufferedImage;
+		long start = metrics.start();
+		ImageInformation imageInformation = readImageInformation(source);
+		metrics.stop(SyncMetrics.Stage.EXIF, start, 0);
+
+		BufferedImage bufferedImage = decode(source, minPixelSmallerSide, imageInformation);
+		if (imageInformation.orientation == 1) {
+			return bufferedImage;
 		}
+		start = metrics.start();
+		BufferedImage transformedImage = orient(bufferedImage, imageInformation.orientation);
+		metrics.stop(SyncMetrics.Stage.ROTATE, start, 0);
 		return transformedImage;
 	}
 
+	/**
+	 * Thumbnail from the preview embedded in the exif data, saves scaling the
+	 * decoded image down. Null if there is no embedded preview, it is smaller
+	 * than needed or its aspect ratio differs from the image (letterboxed or
+	 * not rotated with the image).
+	 */
+	public ResizedImage createThumbnailFromExif(ImageSource source, int maxPixelSmallerSide) throws IOException {
+
+		long start = metrics.start();
+		Metadata metadata;
+		JpegSegmentData segments;
+		try {
+			metadata = source.getMetadata();
+			segments = JpegSegmentReader.readSegments(new StreamReader(source.newInputStream()),
+					Collections.singletonList(JpegSegmentType.APP1));
+		} catch (ImageProcessingException e) {
+			return null;
+		}
+		metrics.stop(SyncMetrics.Stage.EXIF, start, 0);
+
+		JpegDirectory jpegDirectory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+		ExifThumbnailDirectory thumbnailDirectory = metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+		if (jpegDirectory == null || thumbnailDirectory == null
+				|| !thumbnailDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET)
+				|| !thumbnailDirectory.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH)) {
+			return null;
+		}
+
+		BufferedImage thumbnail;
+		int width;
+		int height;
+		try {
+			thumbnail = decode(readExifThumbnailBytes(segments,
+					thumbnailDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET),
+					thumbnailDirectory.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH)));
+			width = jpegDirectory.getImageWidth();
+			height = jpegDirectory.getImageHeight();
+		} catch (MetadataException e) {
+			return null;
+		}
+		if (thumbnail == null
+				|| Math.min(thumbnail.getWidth(), thumbnail.getHeight()) < maxPixelSmallerSide
+				|| Math.abs(thumbnail.getWidth() / (double) thumbnail.getHeight() - width / (double) height)
+						> EXIF_THUMBNAIL_ASPECT_TOLERANCE * width / height) {
+			return null;
+		}
+
+		// the embedded preview has the orientation of the image
+		ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+		if (directory != null && directory.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+			try {
+				start = metrics.start();
+				thumbnail = orient(thumbnail, directory.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+				metrics.stop(SyncMetrics.Stage.ROTATE, start, 0);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+
+		return createRenditions(thumbnail, maxPixelSmallerSide).get(0);
+	}
+
+	private static byte[] readExifThumbnailBytes(JpegSegmentData segments, int offset, int length) {
+
+		byte[] preamble = ExifReader.JPEG_SEGMENT_PREAMBLE.getBytes(StandardCharsets.US_ASCII);
+		for (byte[] segment : segments.getSegments(JpegSegmentType.APP1)) {
+			// offset is relative to the tiff header behind the preamble
+			if (segment.length >= preamble.length + offset + length
+					&& Arrays.equals(preamble, Arrays.copyOf(segment, preamble.length))) {
+				return Arrays.copyOfRange(segment, preamble.length + offset, preamble.length + offset + length);
+			}
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * Renditions of an image for the given sizes of the smaller side,
+	 * descending. Each rendition is scaled from the raster of the next larger
+	 * one and encoded once.
+	 */
+	public List<ResizedImage> createRenditions(BufferedImage image, int... maxPixelSmallerSides) {
+
+		Dimension original = new Dimension(image.getWidth(), image.getHeight());
+		List<ResizedImage> renditions = new LinkedList<>();
+		BufferedImage source = image;
+		for (int maxPixelSmallerSide : maxPixelSmallerSides) {
+			// sizes always relative to the original, no rounding drift
+			Dimension newSize = calculateOptimalSize(original, maxPixelSmallerSide, false);
+			long start = metrics.start();
+			BufferedImage scaled = ImageScaler.scale(source, newSize.getWidth(), newSize.getHeight(), false);
+			metrics.stop(SyncMetrics.Stage.RESIZE, start, 0);
+
+			ResizedImage rendition = new ResizedImage();
+			rendition.setHeight(newSize.getHeight());
+			rendition.setWidth(newSize.getWidth());
+			encode(scaled, rendition);
+			renditions.add(rendition);
+			source = scaled;
+		}
+		return renditions;
+	}
+
 	public ResizedImage resizeImage(BufferedImage originalImage, int maxPixelSmallerSide, boolean withAlpha) {
 
 		Dimension newSize = calculateOptimalSize(
@@ -262,34 +853,84 @@ public class ImageProcessing {
 
 	public ResizedImage resizeImage(BufferedImage originalImage, Dimension newSize, boolean withAlpha) {
 
-		try {
-			ResizedImage resizedImage = new ResizedImage();
-			resizedImage.setHeight(newSize.getHeight());
-			resizedImage.setWidth(newSize.getWidth());
-
-			Image toolkitImage = originalImage.getScaledInstance(newSize.getWidth(), newSize.getHeight(),
-					Image.SCALE_SMOOTH);
-			int width = toolkitImage.getWidth(null);
-			int height = toolkitImage.getHeight(null);
-			BufferedImage rbi = new BufferedImage(width, height,
-					withAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
-			Graphics g = rbi.getGraphics();
-			g.drawImage(toolkitImage, 0, 0, null);
-			g.dispose();
-
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ImageIO.write(rbi, Photo.DEST_PIC_DATATYPE, baos);
-			baos.flush();
-			byte[] imageInByte = baos.toByteArray();
-			resizedImage.setBytes(imageInByte);
-			baos.close();
-			return resizedImage;
+		ResizedImage resizedImage = new ResizedImage();
+		resizedImage.setHeight(newSize.getHeight());
+		resizedImage.setWidth(newSize.getWidth());
+
+		long start = metrics.start();
+		BufferedImage rbi = ImageScaler.scale(originalImage, newSize.getWidth(), newSize.getHeight(), withAlpha);
+		metrics.stop(SyncMetrics.Stage.RESIZE, start, 0);
+
+		encode(rbi, resizedImage);
+		return resizedImage;
+	}
 
+	/**
+	 * Gives the pooled buffer of an uploaded image back.
+	 */
+	public void releaseBytes(ResizedImage resizedImage) {
+		if (resizedImage != null) {
+			jpegEncoder.release(resizedImage.getBytes());
+			resizedImage.setBytes(null);
+		}
+	}
+
+	private void encode(BufferedImage image, ResizedImage resizedImage) {
+
+		try {
+			long start = metrics.start();
+			JpegEncoder.EncodedImage encodedImage = jpegEncoder.encode(image);
+			metrics.stop(SyncMetrics.Stage.JPEG_ENCODE, start, encodedImage.getLength());
+			resizedImage.setBytes(encodedImage.getBuffer(), encodedImage.getLength());
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Decodes with the largest power of two subsampling that keeps at least
+	 * the given pixels on the smaller side, 0 for full resolution. The size
+	 * from the metadata saves reading the image header for that.
+	 */
+	private BufferedImage decode(ImageSource source, int minPixelSmallerSide, ImageInformation imageInformation)
+			throws IOException {
+
+		long start = metrics.start();
+		try (ImageInputStream input = source.newImageInputStream()) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				throw new IOException("no image reader found");
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				if (minPixelSmallerSide > 0) {
+					int smallerSide = imageInformation.width > 0 && imageInformation.height > 0
+							? Math.min(imageInformation.width, imageInformation.height)
+							: Math.min(reader.getWidth(0), reader.getHeight(0));
+					int subsampling = 1;
+					while (smallerSide / (subsampling * 2) >= minPixelSmallerSide) {
+						subsampling *= 2;
+					}
+					param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				}
+				BufferedImage image = reader.read(0, param);
+				metrics.stop(SyncMetrics.Stage.DECODE, start, source.getLength());
+				return image;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private BufferedImage decode(byte[] bytes) throws IOException {
+		long start = metrics.start();
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+		metrics.stop(SyncMetrics.Stage.DECODE, start, bytes.length);
+		return image;
+	}
+
 	private Dimension calculateOptimalSize(Dimension original, int maxPixelSmallerSide, boolean isVideo) {
 
 		int newH = original.getHeight();
@@ -346,6 +987,25 @@ public class ImageProcessing {
 		return new Dimension(newW, newH);
 	}
 
+	/**
+	 * Lossless pixel remapping, affine transformation only for raster layouts
+	 * the remapping does not support.
+	 */
+	private static BufferedImage orient(BufferedImage image, int orientation) throws Exception {
+
+		BufferedImage oriented = ImageOrientation.remap(image, orientation);
+		if (oriented != null) {
+			return oriented;
+		}
+		return orientByTransformation(image, orientation);
+	}
+
+	static BufferedImage orientByTransformation(BufferedImage image, int orientation) throws Exception {
+		// size of the decoded image, may be subsampled
+		return transformImage(image,
+				getExifTransformation(new ImageInformation(orientation, image.getWidth(), image.getHeight())));
+	}
+
 	private static BufferedImage transformImage(BufferedImage image, AffineTransform transform)
 			throws Exception {
 
@@ -360,25 +1020,32 @@ public class ImageProcessing {
 		return destinationImage;
 	}
 
-	private static ImageInformation readImageInformation(File imageFile)
-			throws IOException, MetadataException, ImageProcessingException {
+	private static ImageInformation readImageInformation(ImageSource source)
+			throws IOException, ImageProcessingException {
 
-		Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
+		Metadata metadata = source.getMetadata();
 		Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
 		JpegDirectory jpegDirectory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
 
-		if (directory == null) {
-			return null;
-		}
-
 		int orientation = 1;
-		try {
-			orientation = directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
-		} catch (MetadataException me) {
-			System.out.println("Could not get orientation");
+		if (directory != null && directory.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+			try {
+				orientation = directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+			} catch (MetadataException me) {
+				System.out.println("Could not get orientation");
+			}
+		}
+		// 0 if unknown, not a jpeg
+		int width = 0;
+		int height = 0;
+		if (jpegDirectory != null) {
+			try {
+				width = jpegDirectory.getImageWidth();
+				height = jpegDirectory.getImageHeight();
+			} catch (MetadataException me) {
+				System.out.println("Could not get image size");
+			}
 		}
-		int width = jpegDirectory.getImageWidth();
-		int height = jpegDirectory.getImageHeight();
 
 		return new ImageInformation(orientation, width, height);
 	}
@@ -425,12 +1092,30 @@ public class ImageProcessing {
 		return t;
 	}
 
-	private BufferedImage readPlaySymbolImage() throws IOException {
-		URL url = this.getClass().getClassLoader().getResource("play.png");
-		URLConnection resConn = url.openConnection();
-		resConn.setUseCaches(false);
-		InputStream in = resConn.getInputStream();
-		return ImageIO.read(in);
+	/**
+	 * Play symbol scaled to the given size of the smaller side, cached per
+	 * size. Cached images are shared, callers must not draw on them.
+	 */
+	private BufferedImage lookupPlaySymbol(int pixelsSmallerSide) throws IOException {
+
+		BufferedImage playSymbol = playSymbols.get(pixelsSmallerSide);
+		if (playSymbol == null) {
+			BufferedImage original = readPlaySymbolImage();
+			Dimension size = calculateOptimalSize(new Dimension(original.getWidth(), original.getHeight()),
+					pixelsSmallerSide, false);
+			playSymbol = ImageScaler.scale(original, size.getWidth(), size.getHeight(), true);
+			playSymbols.putIfAbsent(pixelsSmallerSide, playSymbol);
+		}
+		return playSymbol;
+	}
+
+	private synchronized BufferedImage readPlaySymbolImage() throws IOException {
+		if (playSymbolImage == null) {
+			try (InputStream in = this.getClass().getClassLoader().getResourceAsStream("play.png")) {
+				playSymbolImage = ImageIO.read(in);
+			}
+		}
+		return playSymbolImage;
 	}
 
 	// Inner class containing image information
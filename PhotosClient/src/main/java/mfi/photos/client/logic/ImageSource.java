@@ -0,0 +1,142 @@
+package mfi.photos.client.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+
+/**
+ * An original image read once into a pooled buffer. Metadata reading and
+ * decoding work on the buffer, the file is not opened again. Closing gives the
+ * buffer back to the pool.
+ */
+public class ImageSource implements Closeable {
+
+	private static final int BUFFER_GRANULARITY = 1 << 20;
+	private static final int POOLED_BUFFERS = 4;
+
+	private static final Queue<byte[]> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+	private byte[] buffer;
+	private int length;
+	private Metadata metadata;
+
+	private ImageSource(byte[] buffer, int length) {
+		this.buffer = buffer;
+		this.length = length;
+	}
+
+	public static ImageSource read(File file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - BUFFER_GRANULARITY) {
+				throw new IOException("file too large: " + file.getAbsolutePath());
+			}
+			byte[] buffer = acquire((int) size);
+			ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) size);
+			while (target.hasRemaining() && channel.read(target) >= 0) {
+				// read until full or end of file
+			}
+			return new ImageSource(buffer, target.position());
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public InputStream newInputStream() {
+		return new ByteArrayInputStream(buffer, 0, length);
+	}
+
+	public ImageInputStream newImageInputStream() {
+		return new BufferImageInputStream(buffer, length);
+	}
+
+	/**
+	 * Metadata of the image, read from the buffer on first access.
+	 */
+	public Metadata getMetadata() throws ImageProcessingException, IOException {
+		if (metadata == null) {
+			metadata = ImageMetadataReader.readMetadata(newInputStream(), length);
+		}
+		return metadata;
+	}
+
+	@Override
+	public void close() {
+		if (buffer != null && BUFFER_POOL.size() < POOLED_BUFFERS) {
+			BUFFER_POOL.offer(buffer);
+		}
+		buffer = null;
+	}
+
+	private static byte[] acquire(int size) {
+		byte[] buffer = BUFFER_POOL.poll();
+		if (buffer == null || buffer.length < size) {
+			// whole megabytes, so the buffer fits the next photos too
+			buffer = new byte[(size / BUFFER_GRANULARITY + 1) * BUFFER_GRANULARITY];
+		}
+		return buffer;
+	}
+
+	/**
+	 * ImageInputStream on the buffer, without the copy of a memory cache.
+	 */
+	private static class BufferImageInputStream extends ImageInputStreamImpl {
+
+		private byte[] buffer;
+		private int length;
+
+		private BufferImageInputStream(byte[] buffer, int length) {
+			this.buffer = buffer;
+			this.length = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkClosed();
+			bitOffset = 0;
+			if (streamPos >= length) {
+				return -1;
+			}
+			return buffer[(int) streamPos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkClosed();
+			bitOffset = 0;
+			if (len == 0) {
+				return 0;
+			}
+			if (streamPos >= length) {
+				return -1;
+			}
+			int count = (int) Math.min(len, length - streamPos);
+			System.arraycopy(buffer, (int) streamPos, b, off, count);
+			streamPos += count;
+			return count;
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Jpeg encoding with one reused ImageWriter per thread. Encodes into pooled
+ * buffers of power of two sizes, a buffer may be larger than the encoded
+ * data. Buffers are given back with {@link #release(byte[])} once uploaded.
+ */
+public class JpegEncoder {
+
+	public enum Chroma {
+		YUV420, YUV444;
+	}
+
+	private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	// estimated compressed size, generous for noisy photos
+	private static final int ESTIMATED_BITS_PER_PIXEL = 2;
+
+	private static final int MIN_BUFFER_SIZE = 4096;
+	private static final int BUFFERS_PER_SIZE = 8;
+
+	private float quality;
+	private boolean progressive;
+	private Chroma chroma;
+
+	private ThreadLocal<ImageWriter> writers = ThreadLocal
+			.withInitial(() -> ImageIO.getImageWritersByFormatName("jpeg").next());
+
+	private Map<Integer, Queue<byte[]>> bufferPool = new ConcurrentHashMap<>();
+
+	public JpegEncoder(float quality, boolean progressive, Chroma chroma) {
+		this.quality = quality;
+		this.progressive = progressive;
+		this.chroma = chroma;
+	}
+
+	public EncodedImage encode(BufferedImage image) throws IOException {
+
+		ImageWriter writer = writers.get();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality);
+		if (progressive) {
+			param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		}
+		IIOMetadata metadata = chroma == Chroma.YUV444 ? fullChromaMetadata(writer, image, param) : null;
+
+		BufferOutputStream output = new BufferOutputStream(
+				acquire((int) Math.min(Integer.MAX_VALUE / 2,
+						(long) image.getWidth() * image.getHeight() * ESTIMATED_BITS_PER_PIXEL / 8)));
+		// memory cache, no temp files of the ImageIO disk cache
+		try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+			writer.setOutput(imageOutput);
+			writer.write(null, new IIOImage(image, null, metadata), param);
+		} finally {
+			writer.reset();
+		}
+		return new EncodedImage(output.buffer(), output.size());
+	}
+
+	/**
+	 * Gives a buffer of an encoded image back to the pool.
+	 */
+	public void release(byte[] buffer) {
+
+		if (buffer == null || Integer.bitCount(buffer.length) != 1 || buffer.length < MIN_BUFFER_SIZE) {
+			return;
+		}
+		Queue<byte[]> buffers = bufferPool.computeIfAbsent(buffer.length, size -> new ConcurrentLinkedQueue<>());
+		if (buffers.size() < BUFFERS_PER_SIZE) {
+			buffers.offer(buffer);
+		}
+	}
+
+	private byte[] acquire(int estimatedSize) {
+
+		int size = Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(Math.max(1, estimatedSize - 1)) << 1);
+		Queue<byte[]> buffers = bufferPool.get(size);
+		byte[] buffer = buffers == null ? null : buffers.poll();
+		return buffer != null ? buffer : new byte[size];
+	}
+
+	/**
+	 * Metadata without chroma subsampling - luma sampled 1x1 like chroma.
+	 */
+	private static IIOMetadata fullChromaMetadata(ImageWriter writer, BufferedImage image, ImageWriteParam param)
+			throws IOException {
+
+		IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+		Element tree = (Element) metadata.getAsTree(JPEG_METADATA_FORMAT);
+		NodeList components = tree.getElementsByTagName("componentSpec");
+		for (int i = 0; i < components.getLength(); i++) {
+			Element component = (Element) components.item(i);
+			component.setAttribute("HsamplingFactor", "1");
+			component.setAttribute("VsamplingFactor", "1");
+		}
+		metadata.setFromTree(JPEG_METADATA_FORMAT, tree);
+		return metadata;
+	}
+
+	public static class EncodedImage {
+
+		private byte[] buffer;
+		private int length;
+
+		private EncodedImage(byte[] buffer, int length) {
+			this.buffer = buffer;
+			this.length = length;
+		}
+
+		public byte[] getBuffer() {
+			return buffer;
+		}
+
+		public int getLength() {
+			return length;
+		}
+	}
+
+	/**
+	 * Writes into a given buffer and hands it out without copying. Grows to
+	 * the next power of two, so a grown buffer can be pooled too.
+	 */
+	private static class BufferOutputStream extends ByteArrayOutputStream {
+
+		private BufferOutputStream(byte[] buffer) {
+			super(0);
+			buf = buffer;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			ensureSize(count + 1);
+			super.write(b);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			ensureSize(count + len);
+			super.write(b, off, len);
+		}
+
+		private void ensureSize(int minSize) {
+			if (minSize > buf.length) {
+				buf = Arrays.copyOf(buf, Integer.highestOneBit(minSize - 1) << 1);
+			}
+		}
+
+		private byte[] buffer() {
+			return buf;
+		}
+	}
+
+}
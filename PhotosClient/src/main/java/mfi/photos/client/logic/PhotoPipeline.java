@@ -0,0 +1,301 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FileUtils;
+
+import mfi.photos.client.model.Photo;
+
+/**
+ * Processes photos in three stages, each backed by its own worker pool:
+ * transform (decode / rotate), encode (resize and jpeg encoding) and upload.
+ * The stage queues are bounded - a full queue blocks the submitting stage, so
+ * memory is limited to the photos in flight. Videos are transformed on a
+ * separate transcoding pool with an unbounded queue, so images keep flowing
+ * while videos are transcoded.
+ */
+public class PhotoPipeline {
+
+	private static final long IDLE_KEEP_ALIVE_SECONDS = 60L;
+
+	// smaller side in pixels
+	private static final int IMAGE_SIZE = 1080;
+	private static final int THUMBNAIL_SIZE = 90;
+	private static final int VIDEO_SIZE = 720;
+
+	private ImageProcessing imageProcessing;
+	private PhotosServerConnection photoServerConnection;
+	private UploadJournal uploadJournal;
+	private TempWorkspace tempWorkspace;
+	private CpuBudget cpuBudget;
+	private boolean thumbnailsFromExif;
+
+	private ThreadPoolExecutor transformExecutor;
+	private ThreadPoolExecutor transcodeExecutor;
+	private ThreadPoolExecutor encodeExecutor;
+	private ThreadPoolExecutor uploadExecutor;
+
+	public PhotoPipeline(ImageProcessing imageProcessing, PhotosServerConnection photoServerConnection,
+			UploadJournal uploadJournal, TempWorkspace tempWorkspace, CpuBudget cpuBudget,
+			boolean thumbnailsFromExif, int transformThreads, int transcodeThreads, int encodeThreads,
+			int uploadThreads, int queueSize) {
+		this.imageProcessing = imageProcessing;
+		this.photoServerConnection = photoServerConnection;
+		this.uploadJournal = uploadJournal;
+		this.tempWorkspace = tempWorkspace;
+		this.cpuBudget = cpuBudget;
+		this.thumbnailsFromExif = thumbnailsFromExif;
+		transformExecutor = newStageExecutor("transform", transformThreads,
+				new LinkedBlockingQueue<>(queueSize));
+		// queued videos hold no data until transcoding starts
+		transcodeExecutor = newStageExecutor("transcode", transcodeThreads, new LinkedBlockingQueue<>());
+		encodeExecutor = newStageExecutor("encode", encodeThreads, new LinkedBlockingQueue<>(queueSize));
+		uploadExecutor = newStageExecutor("upload", uploadThreads, new LinkedBlockingQueue<>(queueSize));
+	}
+
+	/**
+	 * Submits a photo to the pipeline. Blocks while the transform queue is
+	 * full, videos never block. Photos not yet started when cancel is
+	 * signaled complete with a CancellationException.
+	 */
+	public CompletableFuture<PhotoJob> submit(Photo photo, String albumKey, BooleanSupplier cancel) {
+
+		PhotoJob job = new PhotoJob(photo, albumKey);
+		ThreadPoolExecutor firstStage = photo.isVideo() ? transcodeExecutor : transformExecutor;
+		// image stages keep a core busy, transcoding waits for ffmpeg
+		Supplier<PhotoJob> firstStep = photo.isVideo() ? () -> transform(job, cancel)
+				: () -> onCpu(() -> transform(job, cancel));
+		return CompletableFuture.supplyAsync(firstStep, firstStage) //
+				.thenApplyAsync(transformed -> onCpu(() -> encode(transformed)), encodeExecutor) //
+				.thenApplyAsync(this::upload, uploadExecutor);
+	}
+
+	public void shutdown() {
+		transformExecutor.shutdownNow();
+		transcodeExecutor.shutdownNow();
+		encodeExecutor.shutdownNow();
+		uploadExecutor.shutdownNow();
+	}
+
+	/**
+	 * Runs a stage as busy Java worker of the cpu budget.
+	 */
+	private PhotoJob onCpu(Supplier<PhotoJob> stage) {
+		cpuBudget.javaWorkerStarted();
+		try {
+			return stage.get();
+		} finally {
+			cpuBudget.javaWorkerFinished();
+		}
+	}
+
+	private PhotoJob transform(PhotoJob job, BooleanSupplier cancel) {
+
+		if (cancel.getAsBoolean()) {
+			throw new CancellationException();
+		}
+
+		job.workDir = tempWorkspace.open();
+		try {
+			Photo photo = job.photo;
+			if (photo.isVideo()) {
+				// video and video preview, transcoded video may be kept from an
+				// interrupted run
+				job.videoFile = uploadJournal.lookupTranscodedVideo(job.albumKey, photo);
+				job.videoFileKept = job.videoFile != null;
+				if (job.videoFile == null) {
+					// transcoding creates the preview too
+					TranscodedVideo video = imageProcessing.resizeVideo(photo, VIDEO_SIZE, job.workDir);
+					job.videoFile = video.getFile();
+					job.resizedImage = video.getPreviewImage();
+				} else {
+					job.resizedImage = imageProcessing.createPreviewImage(job.videoFile);
+				}
+				job.remoteFileSize = job.videoFile.length();
+				job.fullSizeImageName = photo.getRemoteName("pre_");
+			} else {
+				// full size image
+				job.fullSizeImageName = photo.getRemoteName(null);
+				// the original is read only once
+				try (ImageSource source = imageProcessing.readImageSource(photo, job.workDir)) {
+					job.transformedImage = imageProcessing.rotateImageToZeroDegree(source, IMAGE_SIZE);
+					if (thumbnailsFromExif) {
+						// null if not usable, scaled from the image then
+						job.thumbnailImage = imageProcessing.createThumbnailFromExif(source, THUMBNAIL_SIZE);
+					}
+				}
+			}
+			return job;
+		} catch (Exception e) {
+			job.deleteTempFiles();
+			throw new CompletionException(e);
+		}
+	}
+
+	private PhotoJob encode(PhotoJob job) {
+
+		try {
+			if (job.photo.isVideo()) {
+				// thumbnail from the preview raster
+				job.thumbnailImage = imageProcessing.createRenditions(job.resizedImage.getImage(), THUMBNAIL_SIZE)
+						.get(0);
+				job.resizedImage.setImage(null);
+			} else if (job.thumbnailImage != null) {
+				job.resizedImage = imageProcessing.createRenditions(job.transformedImage, IMAGE_SIZE).get(0);
+				job.remoteFileSize = job.resizedImage.getLength();
+			} else {
+				List<ResizedImage> renditions = imageProcessing.createRenditions(job.transformedImage, IMAGE_SIZE,
+						THUMBNAIL_SIZE);
+				job.resizedImage = renditions.get(0);
+				job.thumbnailImage = renditions.get(1);
+				job.remoteFileSize = job.resizedImage.getLength();
+			}
+			// full size raster is not needed any more
+			job.transformedImage = null;
+			return job;
+		} catch (Exception e) {
+			job.deleteTempFiles();
+			throw new CompletionException(e);
+		}
+	}
+
+	private PhotoJob upload(PhotoJob job) {
+
+		try {
+			if (job.photo.isVideo()) {
+				if (!job.videoFileKept && !job.videoFile.equals(job.photo.getLocalFile())) {
+					// kept in the journal until the photo is complete: an upload
+					// interrupted by exit, kill or crash resumes with the same bytes
+					job.videoFile = uploadJournal.keepTranscodedVideo(job.albumKey, job.photo, job.videoFile);
+					job.videoFileKept = true;
+				}
+				photoServerConnection.uploadPhoto(job.videoFile, job.photo.getRemoteName(null), job.albumKey);
+			}
+
+			// upload full size image / preview
+			photoServerConnection.uploadPhoto(
+					new ByteArrayInputStream(job.resizedImage.getBytes(), 0, job.resizedImage.getLength()),
+					job.resizedImage.getLength(), job.fullSizeImageName, job.albumKey);
+
+			// thumbnail image
+			photoServerConnection.uploadPhoto(
+					new ByteArrayInputStream(job.thumbnailImage.getBytes(), 0, job.thumbnailImage.getLength()),
+					job.thumbnailImage.getLength(), job.photo.getRemoteName("tn_"), job.albumKey);
+
+			uploadJournal.completePhoto(job.albumKey, job.photo, job.thumbnailImage.getHeight(),
+					job.thumbnailImage.getWidth(), job.resizedImage.getHeight(), job.resizedImage.getWidth(),
+					job.remoteFileSize);
+			return job;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		} finally {
+			imageProcessing.releaseBytes(job.resizedImage);
+			imageProcessing.releaseBytes(job.thumbnailImage);
+			job.deleteTempFiles();
+		}
+	}
+
+	private static ThreadPoolExecutor newStageExecutor(String stageName, int threads,
+			BlockingQueue<Runnable> queue) {
+
+		AtomicInteger threadCounter = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, queue, runnable -> {
+					Thread thread = new Thread(runnable,
+							"photos-" + stageName + "-" + threadCounter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, (runnable, rejectingExecutor) -> {
+					// queue is full -> block the submitting thread (backpressure)
+					if (rejectingExecutor.isShutdown()) {
+						throw new RejectedExecutionException(stageName + " stage is shut down");
+					}
+					try {
+						rejectingExecutor.getQueue().put(runnable);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException(stageName + " stage interrupted", e);
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * A photo uploaded completely by an earlier, interrupted run.
+	 */
+	public static CompletableFuture<PhotoJob> completed(Photo photo, String albumKey,
+			UploadJournal.PhotoEntry entry) {
+
+		PhotoJob job = new PhotoJob(photo, albumKey);
+		job.resizedImage = new ResizedImage();
+		job.resizedImage.setHeight(entry.getHeight());
+		job.resizedImage.setWidth(entry.getWidth());
+		job.thumbnailImage = new ResizedImage();
+		job.thumbnailImage.setHeight(entry.getThumbnailHeight());
+		job.thumbnailImage.setWidth(entry.getThumbnailWidth());
+		job.remoteFileSize = entry.getRemoteFileSize();
+		return CompletableFuture.completedFuture(job);
+	}
+
+	public static class PhotoJob {
+
+		private Photo photo;
+		private String albumKey;
+		private BufferedImage transformedImage;
+		private File videoFile;
+		// transcoded video in the upload journal, deleted when the photo is
+		// complete
+		private boolean videoFileKept;
+		private ResizedImage resizedImage;
+		private ResizedImage thumbnailImage;
+		private String fullSizeImageName;
+		private long remoteFileSize;
+		private TempWorkspace.JobDir workDir;
+
+		private PhotoJob(Photo photo, String albumKey) {
+			this.photo = photo;
+			this.albumKey = albumKey;
+		}
+
+		private void deleteTempFiles() {
+			if (!videoFileKept && videoFile != null && !videoFile.equals(photo.getLocalFile())) {
+				FileUtils.deleteQuietly(videoFile);
+			}
+			if (workDir != null) {
+				workDir.close();
+			}
+		}
+
+		public Photo getPhoto() {
+			return photo;
+		}
+
+		public ResizedImage getResizedImage() {
+			return resizedImage;
+		}
+
+		public ResizedImage getThumbnailImage() {
+			return thumbnailImage;
+		}
+
+		public long getRemoteFileSize() {
+			return remoteFileSize;
+		}
+	}
+
+}
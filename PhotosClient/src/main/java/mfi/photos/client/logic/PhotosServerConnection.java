@@ -1,16 +1,23 @@
 package mfi.photos.client.logic;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.security.DigestInputStream;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
@@ -37,42 +44,145 @@ public class PhotosServerConnection {
 	private String credentialUser;
 	private String credentialPass;
 	private String encryptionSecret;
+	private UploadJournal uploadJournal;
+	private SyncMetrics metrics;
 
-	public PhotosServerConnection(String url, String credentialUser, String credentialPass, String encryptionSecret) {
+	public PhotosServerConnection(String url, String credentialUser, String credentialPass, String encryptionSecret,
+			UploadJournal uploadJournal, SyncMetrics metrics) {
 		this.url = url;
 		this.credentialUser = credentialUser;
 		this.credentialPass = credentialPass;
 		this.encryptionSecret = encryptionSecret;
+		this.uploadJournal = uploadJournal;
+		this.metrics = metrics;
 	}
 
 	public void uploadPhoto(InputStream input, long length, String filename, String dir) {
 
-		Consumer<ChunkData> uploadConsumer = (chunkData) -> {
+		AtomicLong consumerNanos = new AtomicLong();
+		long start = metrics.start();
+		long bytesWritten = AES.encrypt(length, encryptionSecret.toCharArray(), input, filename, dir,
+				timedConsumer(this::uploadChunk, consumerNanos));
+		metrics.record(SyncMetrics.Stage.AES_ENCRYPT, System.nanoTime() - start - consumerNanos.get(), length);
+		verifyChecksum(filename, dir, bytesWritten);
+	}
+
+	/**
+	 * Uploads a file, resuming an interrupted upload recorded in the journal
+	 * if the server still holds exactly the confirmed chunks and the plain
+	 * data of these chunks is unchanged.
+	 */
+	public void uploadPhoto(File file, String filename, String dir) throws IOException {
+
+		long length = file.length();
+
+		UploadJournal.FileEntry entry = uploadJournal.lookupFile(dir, filename);
+		if (entry != null && entry.getLength() == length && entry.getChunks() > 0
+				&& readRemoteLength(filename, dir) == entry.getBytes()) {
+			MessageDigest digest = newDigest();
+			try (InputStream input = new DigestInputStream(new FileInputStream(file), digest)) {
+				long skipLength = entry.getChunks() * AES.PLAIN_CHUNK_SIZE;
+				if (skipChunks(input, skipLength) == skipLength
+						&& StringUtils.equals(digestHex(digest), entry.getDigest())) {
+					System.out.println("resume upload: " + filename + " at chunk " + entry.getChunks());
+					AtomicLong consumerNanos = new AtomicLong();
+					long start = metrics.start();
+					long bytesWritten = AES.encryptResume(entry.getHeader(), entry.getChunks(),
+							encryptionSecret.toCharArray(), input, filename, dir,
+							timedConsumer(journalingConsumer(length, filename, dir, digest), consumerNanos));
+					metrics.record(SyncMetrics.Stage.AES_ENCRYPT, System.nanoTime() - start - consumerNanos.get(),
+							length - skipLength);
+					verifyChecksum(filename, dir, bytesWritten);
+					uploadJournal.removeFile(dir, filename);
+					return;
+				}
+			}
+			System.out.println("resume not possible, restarting upload: " + filename);
+		}
+
+		MessageDigest digest = newDigest();
+		try (InputStream input = new DigestInputStream(new FileInputStream(file), digest)) {
+			AtomicLong consumerNanos = new AtomicLong();
+			long start = metrics.start();
+			long bytesWritten = AES.encrypt(length, encryptionSecret.toCharArray(), input, filename, dir,
+					timedConsumer(journalingConsumer(length, filename, dir, digest), consumerNanos));
+			metrics.record(SyncMetrics.Stage.AES_ENCRYPT, System.nanoTime() - start - consumerNanos.get(), length);
+			verifyChecksum(filename, dir, bytesWritten);
+			uploadJournal.removeFile(dir, filename);
+		}
+	}
+
+	private Consumer<ChunkData> journalingConsumer(long length, String filename, String dir, MessageDigest digest) {
 
-			boolean append = chunkData.append;
-			String asB64;
-			if (chunkData.read == chunkData.bytesIns.length) {
-				asB64 = Base64.getEncoder().encodeToString(chunkData.bytesIns);
+		return (chunkData) -> {
+			uploadChunk(chunkData);
+			if (chunkData.append) {
+				// the digest has seen exactly the plain data of the chunks
+				// encrypted so far
+				uploadJournal.confirmChunk(dir, filename, chunkData.read, digestHex(digest));
 			} else {
-				asB64 = Base64.getEncoder().encodeToString(ArrayUtils.subarray(chunkData.bytesIns, 0, chunkData.read));
+				uploadJournal.startFile(dir, filename, length,
+						ArrayUtils.subarray(chunkData.bytesIns, 0, chunkData.read));
 			}
-			Map<String, String> parameters = new HashMap<String, String>();
-			parameters.put("login_user", credentialUser);
-			parameters.put("login_pass", credentialPass);
-			parameters.put("galleryName", chunkData.dir);
-			parameters.put("imageName", chunkData.filename);
-			parameters.put("saveImage", asB64);
-			parameters.put("append", String.valueOf(append));
+		};
+	}
+
+	/**
+	 * Counts the time spent uploading, so the encryption time is the total
+	 * time of encrypt minus the time of the consumer.
+	 */
+	private static Consumer<ChunkData> timedConsumer(Consumer<ChunkData> consumer, AtomicLong consumerNanos) {
+		return (chunkData) -> {
+			long start = System.nanoTime();
 			try {
-				sendPost(parameters, Timeout.LONG);
-			} catch (IOException | GeneralSecurityException e) {
-				throw new RuntimeException("upload failed", e);
+				consumer.accept(chunkData);
+			} finally {
+				consumerNanos.addAndGet(System.nanoTime() - start);
 			}
 		};
+	}
 
-		long bytesWritten = AES.encrypt(length, encryptionSecret.toCharArray(), input, filename, dir, uploadConsumer);
+	private void uploadChunk(ChunkData chunkData) {
+
+		boolean append = chunkData.append;
+		long start = metrics.start();
+		String asB64;
+		if (chunkData.read == chunkData.bytesIns.length) {
+			asB64 = Base64.getEncoder().encodeToString(chunkData.bytesIns);
+		} else {
+			asB64 = Base64.getEncoder().encodeToString(ArrayUtils.subarray(chunkData.bytesIns, 0, chunkData.read));
+		}
+		metrics.stop(SyncMetrics.Stage.BASE64, start, chunkData.read);
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("login_user", credentialUser);
+		parameters.put("login_pass", credentialPass);
+		parameters.put("galleryName", chunkData.dir);
+		parameters.put("imageName", chunkData.filename);
+		parameters.put("saveImage", asB64);
+		parameters.put("append", String.valueOf(append));
+		try {
+			sendPost(parameters, Timeout.LONG);
+		} catch (IOException | GeneralSecurityException e) {
+			throw new RuntimeException("upload failed", e);
+		}
+	}
+
+	private void verifyChecksum(String filename, String dir, long bytesWritten) {
 
 		String checksumValue = Long.toString(bytesWritten);
+		String checksumIs = "";
+		try {
+			checksumIs = readChecksum(filename, dir);
+		} catch (Exception e) {
+			throw new RuntimeException("Error checksum file:", e);
+		}
+		if (!checksumIs.equals(checksumValue)) {
+			throw new IllegalStateException("checksum error: " + filename + ": " + checksumIs + " / " + checksumValue);
+		}
+	}
+
+	private String readChecksum(String filename, String dir)
+			throws HttpException, IOException, GeneralSecurityException {
 
 		Map<String, String> parameters = new HashMap<String, String>();
 		parameters.put("login_user", credentialUser);
@@ -80,14 +190,45 @@ public class PhotosServerConnection {
 		parameters.put("galleryName", dir);
 		parameters.put("imageName", filename);
 		parameters.put("checksum", "");
-		String checksumIs = "";
+		return sendPost(parameters, Timeout.SHORT);
+	}
+
+	/**
+	 * @return the length of the (encrypted) file on the server, -1 if unknown
+	 */
+	private long readRemoteLength(String filename, String dir) {
 		try {
-			checksumIs = sendPost(parameters, Timeout.SHORT);
+			return Long.parseLong(readChecksum(filename, dir));
 		} catch (Exception e) {
-			throw new RuntimeException("Error checksum file:", e);
+			return -1;
 		}
-		if (!checksumIs.equals(checksumValue)) {
-			throw new IllegalStateException("checksum error: " + filename + ": " + checksumIs + " / " + checksumValue);
+	}
+
+	private static long skipChunks(InputStream input, long skipLength) throws IOException {
+		// read instead of skip, the digest has to see the data
+		byte[] buffer = new byte[AES.PLAIN_CHUNK_SIZE];
+		long skipped = 0;
+		int numRead;
+		while (skipped < skipLength && (numRead = input.read(buffer, 0,
+				(int) Math.min(buffer.length, skipLength - skipped))) > 0) {
+			skipped += numRead;
+		}
+		return skipped;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException impossible) {
+			throw new IllegalStateException(impossible);
+		}
+	}
+
+	private static String digestHex(MessageDigest digest) {
+		try {
+			return Hex.encodeHexString(((MessageDigest) digest.clone()).digest());
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -242,10 +383,13 @@ public class PhotosServerConnection {
 
 		PostMethod method = new PostMethod(url);
 
+		long requestLength = 0;
 		for (String key : parameters.keySet()) {
 			method.addParameter(key, parameters.get(key));
+			requestLength += key.length() + parameters.get(key).length();
 		}
 
+		long start = metrics.start();
 		int statusCode = client.executeMethod(method);
 
 		if (statusCode != -1) {
@@ -255,7 +399,9 @@ public class PhotosServerConnection {
 			System.out.println("statusCode=" + statusCode);
 			throw new IOException();
 		}
-		return StringUtils.trimToEmpty(IOUtils.toString(in));
+		String response = StringUtils.trimToEmpty(IOUtils.toString(in));
+		metrics.stop(SyncMetrics.Stage.HTTP_POST, start, requestLength);
+		return response;
 	}
 
 	private enum Timeout {
@@ -0,0 +1,77 @@
+package mfi.photos.client.logic;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads binary ppm frames (P6) as written by ffmpeg to a pipe, straight into
+ * the raster of a BufferedImage. The header carries the size of the frame
+ * scaled by ffmpeg.
+ */
+public class PpmFrameReader {
+
+	private PpmFrameReader() {
+	}
+
+	/**
+	 * @return the next frame of the stream, null at the end of the stream
+	 */
+	public static BufferedImage read(InputStream in) throws IOException {
+
+		int first = in.read();
+		if (first == -1) {
+			return null;
+		}
+		if (first != 'P' || in.read() != '6') {
+			throw new IOException("no ppm frame");
+		}
+		int width = readHeaderNumber(in);
+		int height = readHeaderNumber(in);
+		int maxValue = readHeaderNumber(in);
+		if (width <= 0 || height <= 0 || maxValue != 255) {
+			throw new IOException("unsupported ppm frame: " + width + "x" + height + ", " + maxValue);
+		}
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		IOUtils.readFully(in, pixels);
+		// ppm is rgb, the raster bgr
+		for (int i = 0; i < pixels.length; i += 3) {
+			byte red = pixels[i];
+			pixels[i] = pixels[i + 2];
+			pixels[i + 2] = red;
+		}
+		return image;
+	}
+
+	/**
+	 * Reads a number of the header and the single whitespace behind it.
+	 */
+	private static int readHeaderNumber(InputStream in) throws IOException {
+
+		int c = in.read();
+		while (c == '#' || Character.isWhitespace(c)) {
+			if (c == '#') {
+				// comment up to the end of the line
+				while (c != '\n' && c != -1) {
+					c = in.read();
+				}
+			}
+			c = in.read();
+		}
+		if (c < '0' || c > '9') {
+			throw new IOException("invalid ppm header");
+		}
+		int number = 0;
+		while (c >= '0' && c <= '9') {
+			number = number * 10 + (c - '0');
+			c = in.read();
+		}
+		return number;
+	}
+
+}
@@ -1,31 +1,45 @@
 package mfi.photos.client.logic;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.imageio.ImageIO;
-
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import mfi.photos.client.gui.Gui;
+import mfi.photos.client.logic.PhotoPipeline.PhotoJob;
 import mfi.photos.client.model.Album;
 import mfi.photos.client.model.Photo;
 import mfi.photos.client.model.SyncModel;
+import mfi.photos.client.model.SyncProgress;
 import mfi.photos.client.model.SyncStatus;
 import mfi.photos.shared.GalleryView;
 
 public class Processor {
 
-	private Gui gui;
+	private static final String GALLERY_HASH_CANCELED = "canceled!";
+	private static final String GALLERY_HASH_PARTIAL = "partial!";
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	private SyncView view;
 	private String[] users;
 	private Properties properties;
 	private PhotosServerConnection photoServerConnection;
@@ -33,6 +47,17 @@ public class Processor {
 	private SyncModel syncModel;
 	private EstimatedUploadTime estimatedUploadTime;
 	private ImageProcessing imageProcessing;
+	private TempWorkspace tempWorkspace;
+	private PhotoPipeline photoPipeline;
+	private UploadJournal uploadJournal;
+	private ForkJoinPool albumPool;
+	private int albumParallelism;
+	private int albumsToProcess;
+	private int photosToProcess;
+	private AtomicInteger photosProcessed;
+	private SyncMetrics syncMetrics;
+	private Queue<String> failedItems;
+	private int galleryFlushSeconds;
 
 	public Processor() {
 		super();
@@ -40,24 +65,73 @@ public class Processor {
 
 	public void initialize() throws Exception {
 
-		properties = getApplicationProperties();
-		imageProcessing = new ImageProcessing(properties.getProperty("ffmpegPath"),
-				properties.getProperty("tempFilePath"));
-		photoServerConnection = new PhotosServerConnection(properties.getProperty("serverURL"),
-				properties.getProperty("technicalUser"), properties.getProperty("technicalUserPass"),
-				properties.getProperty("encryptionSecret"));
-
-		users = StringUtils.split(properties.getProperty("userlist"), ',');
-		gui = new Gui(this);
+		initializeEngine();
+		Gui gui = new Gui(this);
 		gui.paintGui(users);
+		view = gui;
 
 		if (isConnectionToServerOK()) {
 			checkSyncStatus();
 		} else {
-			gui.showConnectionError();
+			view.showConnectionError();
 		}
 	}
 
+	public boolean initializeHeadless(SyncView headlessView) throws Exception {
+
+		initializeEngine();
+		view = headlessView;
+
+		if (isConnectionToServerOK()) {
+			checkSyncStatus();
+			return true;
+		} else {
+			view.showConnectionError();
+			return false;
+		}
+	}
+
+	private void initializeEngine() {
+
+		properties = getApplicationProperties();
+		syncMetrics = new SyncMetrics();
+		JpegEncoder jpegEncoder = new JpegEncoder(
+				Float.parseFloat(StringUtils.defaultIfBlank(properties.getProperty("jpegQuality"), "0.75")),
+				Boolean.parseBoolean(properties.getProperty("jpegProgressive")),
+				JpegEncoder.Chroma.valueOf(StringUtils.defaultIfBlank(properties.getProperty("jpegChroma"), "YUV420")));
+		tempWorkspace = new TempWorkspace(properties.getProperty("tempFilePath"),
+				intProperty("tempDiskCapMB", 4096) * MEGABYTE, properties.getProperty("tempRamPath"),
+				intProperty("tempRamCapMB", 256) * MEGABYTE);
+		int cores = Runtime.getRuntime().availableProcessors();
+		CpuBudget cpuBudget = new CpuBudget(intProperty("cpuBudget", cores));
+		VideoEncoding videoEncoding = new VideoEncoding(
+				VideoEncoding.Profile.valueOf(
+						StringUtils.defaultIfBlank(properties.getProperty("videoProfile"), "archive").toUpperCase()),
+				Double.parseDouble(
+						StringUtils.defaultIfBlank(properties.getProperty("videoTargetSecondsPerMinute"), "0")),
+				intProperty("videoCrf", 0), intProperty("videoSegmentSeconds", 120), cpuBudget);
+		imageProcessing = new ImageProcessing(properties.getProperty("ffmpegPath"), tempWorkspace, syncMetrics,
+				jpegEncoder, videoEncoding);
+		uploadJournal = new UploadJournal(StringUtils.defaultIfBlank(properties.getProperty("journalPath"),
+				properties.getProperty("tempFilePath") + "/upload_journal"));
+		photoServerConnection = new PhotosServerConnection(properties.getProperty("serverURL"),
+				properties.getProperty("technicalUser"), properties.getProperty("technicalUserPass"),
+				properties.getProperty("encryptionSecret"), uploadJournal, syncMetrics);
+
+		int defaultStageThreads = Math.max(1, Math.min(cores / 2, 4));
+		photoPipeline = new PhotoPipeline(imageProcessing, photoServerConnection, uploadJournal, tempWorkspace,
+				cpuBudget, Boolean.parseBoolean(properties.getProperty("thumbnailsFromExif")),
+				intProperty("pipelineTransformThreads", defaultStageThreads),
+				intProperty("videoTranscodeThreads", 1),
+				intProperty("pipelineEncodeThreads", defaultStageThreads),
+				intProperty("pipelineUploadThreads", 2), intProperty("pipelineQueueSize", 2));
+		albumParallelism = intProperty("albumParallelism", 3);
+		galleryFlushSeconds = intProperty("galleryFlushSeconds", 120);
+		albumPool = new ForkJoinPool(albumParallelism);
+
+		users = StringUtils.split(properties.getProperty("userlist"), ',');
+	}
+
 	public boolean isConnectionToServerOK() {
 		return photoServerConnection.isConnectionOK();
 	}
@@ -94,23 +168,23 @@ public class Processor {
 			synchronizer.renameLocalAlbum(syncModel, syncModel.getAlbums().get(index).getName(),
 					newAlbumName);
 
-			gui.viewMessage("");
+			view.viewMessage("");
 			checkSyncStatus();
 
 		} catch (Exception ex) {
-			gui.viewMessage("Es ist ein Fehler aufgetreten!");
+			view.viewMessage("Es ist ein Fehler aufgetreten!");
 			StringWriter sw = new StringWriter();
 			PrintWriter pw = new PrintWriter(sw);
 			ex.printStackTrace(pw);
 			System.out.println(sw.toString());
-			gui.viewMessage(sw.toString());
+			view.viewMessage(sw.toString());
 			return;
 		}
 	}
 
 	private void checkSyncStatus() throws Exception {
 
-		gui.clearTable();
+		view.clearTable();
 
 		syncModel = new SyncModel(properties.getProperty("localAlbumRoot"));
 		synchronizer = new Synchronizer();
@@ -155,7 +229,7 @@ public class Processor {
 			int videos = album.countVideos();
 			String counter = (album.getPhotos().size() - videos) + " + " + videos;
 			String status = album.getSyncStatus().label(album.getPhotoRemoteNamesOutOfSync().size());
-			gui.addRow(album.getKey(), false, album.getName(), counter, status, userFlags);
+			view.addRow(album.getKey(), false, album.getName(), counter, status, userFlags);
 		}
 
 		StringBuilder sb = new StringBuilder();
@@ -189,19 +263,18 @@ public class Processor {
 		if (albumLocalCount == 0 && albumOutOfSyncCount == 0) {
 			sb.append("Alle Alben sind synchron.");
 		}
-		gui.appendMessage(sb.toString().trim());
+		view.appendMessage(sb.toString().trim());
 	}
 
-	public void syncAlbumsByKeyAndUsers(Map<String, Boolean[]> keyAndUsers) throws Exception {
+	public boolean syncAlbumsByKeyAndUsers(Map<String, Boolean[]> keyAndUsers) throws Exception {
 
 		if (!isConnectionToServerOK()) {
-			gui.showConnectionError();
-			return;
+			view.showConnectionError();
+			return false;
 		}
 
 		int totalPhotosToProcess = 0;
 		long totalFilesize = 0;
-		int totalPhotosProcessed = 0;
 		int totalExceptions = 0;
 		for (String key : keyAndUsers.keySet()) {
 			Album album = syncModel.lookupAlbumByKey(key);
@@ -209,57 +282,101 @@ public class Processor {
 			totalFilesize += album.countFileSizeOutOfSync();
 		}
 
+		syncMetrics.reset();
 		estimatedUploadTime = new EstimatedUploadTime(keyAndUsers.size(), totalFilesize);
 		estimatedUploadTime.startUpload();
+		albumsToProcess = keyAndUsers.size();
+		photosToProcess = totalPhotosToProcess;
+		photosProcessed = new AtomicInteger();
+
+		// several albums at once, each one sends its gallery view as soon as it
+		// is done. the slots limit the albums in flight, as blocking album tasks
+		// may let the pool add compensating threads.
+		Semaphore albumSlots = new Semaphore(albumParallelism);
+		failedItems = new ConcurrentLinkedQueue<>();
+		Map<String, ForkJoinTask<Integer>> albumTasks = new LinkedHashMap<>();
 
 		int i = 1;
 		for (String key : keyAndUsers.keySet()) {
-			System.out.println("sync: " + key);
-			try {
-				List<String> albumUser = new LinkedList<>();
-				for (int u = 0; u < users.length; u++) {
-					if (keyAndUsers.get(key)[u] == true) {
-						albumUser.add(users[u]);
+
+			albumSlots.acquire();
+			if (view.isCancel()) {
+				albumSlots.release();
+				break;
+			}
+
+			List<String> albumUser = new LinkedList<>();
+			for (int u = 0; u < users.length; u++) {
+				if (keyAndUsers.get(key)[u] == true) {
+					albumUser.add(users[u]);
+				}
+			}
+			Album album = syncModel.lookupAlbumByKey(key);
+			int albumNumber = i;
+			String[] albumUsers = albumUser.toArray(new String[albumUser.size()]);
+
+			albumTasks.put(key, albumPool.submit(() -> {
+				System.out.println("sync: " + key);
+				try {
+					int exceptions = processAlbum(album, albumNumber, albumUsers);
+					if (!view.isCancel()) {
+						estimatedUploadTime.completedAlbumUpload();
 					}
+					return exceptions;
+				} finally {
+					albumSlots.release();
 				}
-				Album album = syncModel.lookupAlbumByKey(key);
-				totalExceptions += processAlbum(album, syncModel.getLocalBasePath(),
-						"Album " + i + " von " + keyAndUsers.keySet().size(), totalPhotosToProcess,
-						totalPhotosProcessed, albumUser.toArray(new String[albumUser.size()]));
-				totalPhotosProcessed += album.getPhotoRemoteNamesOutOfSync().size();
-			} catch (Exception ex) {
-				gui.viewMessage("Es ist ein Fehler aufgetreten!");
+			}));
+			i++;
+		}
+
+		// a failing album does not stop the others
+		for (Map.Entry<String, ForkJoinTask<Integer>> albumTask : albumTasks.entrySet()) {
+			try {
+				totalExceptions += albumTask.getValue().get();
+			} catch (ExecutionException ee) {
+				Throwable ex = ee.getCause();
 				StringWriter sw = new StringWriter();
 				PrintWriter pw = new PrintWriter(sw);
 				ex.printStackTrace(pw);
-				System.out.println(sw.toString());
-				gui.viewMessage(key + " - " + sw.toString());
-				return;
-			}
-
-			if (gui.isCancel()) {
-				break;
+				System.out.println(albumTask.getKey() + " - " + sw.toString());
+				failedItems.add(albumTask.getKey() + " - " + ex.toString());
+				totalExceptions++;
 			}
-
-			estimatedUploadTime.completedAlbumUpload();
-			i++;
 		}
+
 		estimatedUploadTime.completed();
+		writeSyncReport();
 
-		if (totalExceptions > 0 || gui.isCancel()) {
-			gui.viewMessage(gui.isCancel() ? "Abgebrochen!"
+		if (totalExceptions > 0 || view.isCancel()) {
+			view.viewMessage(view.isCancel() ? "Abgebrochen!"
 					: "Fertig!"
 							+ (totalExceptions > 0 ? " - Insgesamt " + totalExceptions + " Fehler." : ""));
 		}
 		{
-			gui.viewMessage("");
+			view.viewMessage("");
 		}
+		boolean completed = !view.isCancel() && totalExceptions == 0;
 		checkSyncStatus();
+		if (!failedItems.isEmpty()) {
+			view.appendMessage(totalExceptions + " Fehler: " + StringUtils.join(failedItems, ", "));
+		}
 		photoServerConnection.cleanUp(syncModel);
+		return completed;
+	}
+
+	private void writeSyncReport() {
+		String reportPath = StringUtils.defaultIfBlank(properties.getProperty("reportPath"),
+				properties.getProperty("tempFilePath"));
+		try {
+			File report = syncMetrics.writeReport(reportPath);
+			System.out.println("sync report: " + report.getAbsolutePath());
+		} catch (IOException e) {
+			System.out.println("sync report could not be written: " + e);
+		}
 	}
 
-	private int processAlbum(Album album, String localBasePath, String albumStatus, int totalPhotosToProcess,
-			int totalPhotosProcessed, String[] users) throws Exception {
+	private int processAlbum(Album album, int albumNumber, String[] users) throws Exception {
 
 		if (album.getPhotoRemoteNamesOutOfSync().size() == 0 && album.getPhotos().size() == 0
 				&& album.getHashRemote() == null) {
@@ -267,106 +384,140 @@ public class Processor {
 			return 0;
 		}
 
-		String baseUrl = lookupGalleryViewBaseUrl(album.getKey());
-
-		GalleryView galleryView = new GalleryView(album.getKey(), album.getName(), album.getPhotos().size(),
-				users, baseUrl, album.lookupAlbumHash());
-
-		int j = 0;
-
-		StringBuilder exceptionString = new StringBuilder();
-		int exceptionCounter = 0;
-
+		// submit photos to upload - the pipeline works ahead while results are
+		// collected in album order below. progress is reported on completion,
+		// as images usually overtake the videos transcoded in between.
+		AtomicInteger j = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		List<CompletableFuture<PhotoJob>> jobs = new LinkedList<>();
 		for (Photo photo : album.getPhotos()) {
 
-			if (gui.isCancel()) {
-				galleryView.setGalleryhash("canceled!");
+			if (view.isCancel()) {
 				break;
 			}
 
-			boolean upload = album.getPhotoRemoteNamesOutOfSync().contains(photo.getRemoteName(null));
+			if (album.getPhotoRemoteNamesOutOfSync().contains(photo.getRemoteName(null))) {
+				UploadJournal.PhotoEntry journalEntry = uploadJournal.lookupCompletedPhoto(album.getKey(), photo);
+				CompletableFuture<PhotoJob> job = journalEntry != null
+						? PhotoPipeline.completed(photo, album.getKey(), journalEntry)
+						: photoPipeline.submit(photo, album.getKey(), view::isCancel);
+				job.whenComplete((photoJob, ex) -> {
+					if (ex == null) {
+						estimatedUploadTime.completedPhotoUpload(photo.getLocalFileSize());
+						viewProgress(album, albumNumber, j.incrementAndGet(), failed.get());
+					} else if (!(ex.getCause() instanceof CancellationException)) {
+						failed.incrementAndGet();
+					}
+				});
+				jobs.add(job);
+			} else {
+				jobs.add(null);
+			}
+		}
 
+		// wait for the album, committing the items done so far from time to
+		// time, so a failing or aborted run does not lose them
+		// photos in sync have no job (null entry), allOf does not accept them
+		List<CompletableFuture<PhotoJob>> submittedJobs = new LinkedList<>();
+		for (CompletableFuture<PhotoJob> job : jobs) {
+			if (job != null) {
+				submittedJobs.add(job);
+			}
+		}
+		CompletableFuture<Void> albumDone = CompletableFuture
+				.allOf(submittedJobs.toArray(new CompletableFuture<?>[0]));
+		int committed = 0;
+		while (!albumDone.isDone()) {
 			try {
-				if (upload) {
-
-					j++;
-					viewStatusMessage(album, albumStatus, totalPhotosToProcess, totalPhotosProcessed, j,
-							exceptionCounter);
-
-					BufferedImage transformedImage;
-					ResizedImage resizedImage;
-					String fullSizeImageName;
-					long remoteFileSize = 0;
-
-					if (photo.isVideo()) {
-
-						// video
-						File resizedVideo = imageProcessing.resizeVideo(photo, 720);
-						remoteFileSize = resizedVideo.length();
-						photoServerConnection.uploadPhoto(new FileInputStream(resizedVideo),
-								resizedVideo.length(), photo.getRemoteName(null), album.getKey());
-
-						// video preview
-						fullSizeImageName = photo.getRemoteName("pre_");
-						resizedImage = imageProcessing.createPreviewImage(resizedVideo);
-						transformedImage = ImageIO.read(new ByteArrayInputStream(resizedImage.getBytes()));
-
-					} else {
-
-						// full size image
-						fullSizeImageName = photo.getRemoteName(null);
-						transformedImage = imageProcessing.rotateImageToZeroDegree(photo);
-						resizedImage = imageProcessing.resizeImage(transformedImage, 1080, false);
-						remoteFileSize = resizedImage.getBytes().length;
+				albumDone.get(galleryFlushSeconds, TimeUnit.SECONDS);
+			} catch (TimeoutException te) {
+				int done = countCompletedJobs(jobs);
+				if (done > committed) {
+					System.out.println("partial commit: " + album.getKey() + " - " + done + " uploaded");
+					photoServerConnection
+							.sendGalleryView(buildGalleryView(album, users, GALLERY_HASH_PARTIAL, jobs));
+					committed = done;
+				}
+			} catch (ExecutionException ee) {
+				// failed items are collected below
+			}
+		}
 
+		int exceptionCounter = 0;
+		boolean canceled = jobs.size() < album.getPhotos().size();
+		for (int index = 0; index < jobs.size(); index++) {
+			CompletableFuture<PhotoJob> job = jobs.get(index);
+			if (job != null && job.isCompletedExceptionally()) {
+				Photo photo = album.getPhotos().get(index);
+				try {
+					job.get();
+				} catch (ExecutionException ee) {
+					if (ee.getCause() instanceof CancellationException) {
+						// not started before cancel
+						canceled = true;
+						continue;
 					}
+					Throwable e = ee.getCause();
+					StringWriter sw = new StringWriter();
+					PrintWriter pw = new PrintWriter(sw);
+					e.printStackTrace(pw);
+					System.out.println(photo.getLocalFile().getAbsolutePath() + " - " + sw.toString());
+					failedItems.add(album.getName() + ": " + photo.getLocalName() + " - " + e.getMessage());
+					exceptionCounter++;
+				}
+			}
+		}
 
-					// upload full size image / preview
-					photoServerConnection.uploadPhoto(new ByteArrayInputStream(resizedImage.getBytes()),
-							resizedImage.getBytes().length, fullSizeImageName, album.getKey());
-
-					// thumbnail image
-					ResizedImage thumbnailImage = imageProcessing.resizeImage(transformedImage, 90, false);
-					String thumbnailName = photo.getRemoteName("tn_");
-					photoServerConnection.uploadPhoto(new ByteArrayInputStream(thumbnailImage.getBytes()),
-							thumbnailImage.getBytes().length, thumbnailName, album.getKey());
+		String galleryHash = canceled ? GALLERY_HASH_CANCELED
+				: exceptionCounter > 0 ? GALLERY_HASH_PARTIAL : album.lookupAlbumHash();
+		photoServerConnection.sendGalleryView(buildGalleryView(album, users, galleryHash, jobs));
+		if (exceptionCounter == 0) {
+			uploadJournal.clearAlbum(album.getKey());
+		}
 
-					// add item
-					galleryView.addItem(photo.getRemoteName(null), thumbnailImage.getHeight(),
-							thumbnailImage.getWidth(), resizedImage.getHeight(), resizedImage.getWidth(),
-							photo.getLocalHash(), remoteFileSize);
+		return exceptionCounter;
+	}
 
-					estimatedUploadTime.completedPhotoUpload(photo.getLocalFile().length());
+	/**
+	 * Gallery view with all photos unchanged or uploaded successfully so far,
+	 * in album order.
+	 */
+	private GalleryView buildGalleryView(Album album, String[] users, String galleryHash,
+			List<CompletableFuture<PhotoJob>> jobs) throws Exception {
 
-				} else {
-					if (!album.isHasRemotePhotoData()) {
-						photoServerConnection.readPhotos(album);
-					}
-					galleryView.addItem(photo.getRemoteName(null), photo.getRemoteThumbnailSize().getHeight(),
-							photo.getRemoteThumbnailSize().getWidth(), photo.getRemoteSize().getHeight(),
-							photo.getRemoteSize().getWidth(), photo.getLocalHash(),
-							photo.getRemoteFileSize());
+		GalleryView galleryView = new GalleryView(album.getKey(), album.getName(), album.getPhotos().size(),
+				users, lookupGalleryViewBaseUrl(album.getKey()), galleryHash);
+
+		for (int index = 0; index < jobs.size(); index++) {
+			Photo photo = album.getPhotos().get(index);
+			CompletableFuture<PhotoJob> job = jobs.get(index);
+			if (job == null) {
+				if (!album.isHasRemotePhotoData()) {
+					photoServerConnection.readPhotos(album);
 				}
-
-			} catch (Exception e) {
-				StringWriter sw = new StringWriter();
-				PrintWriter pw = new PrintWriter(sw);
-				e.printStackTrace(pw);
-				System.out.println(photo.getLocalFile().getAbsolutePath() + " - " + sw.toString());
-				exceptionString.append(System.getProperty("java.version") + " "
-						+ System.getProperty("java.home") + " Error processing image: " + album.getName()
-						+ ": " + photo.getLocalName() + ". " + sw.toString());
-				exceptionCounter++;
+				galleryView.addItem(photo.getRemoteName(null), photo.getRemoteThumbnailSize().getHeight(),
+						photo.getRemoteThumbnailSize().getWidth(), photo.getRemoteSize().getHeight(),
+						photo.getRemoteSize().getWidth(), photo.getLocalHash(), photo.getRemoteFileSize());
+			} else if (job.isDone() && !job.isCompletedExceptionally()) {
+				PhotoJob photoJob = job.join();
+				ResizedImage resizedImage = photoJob.getResizedImage();
+				ResizedImage thumbnailImage = photoJob.getThumbnailImage();
+				galleryView.addItem(photo.getRemoteName(null), thumbnailImage.getHeight(), thumbnailImage.getWidth(),
+						resizedImage.getHeight(), resizedImage.getWidth(), photo.getLocalHash(),
+						photoJob.getRemoteFileSize());
 			}
 		}
+		return galleryView;
+	}
 
-		if (exceptionCounter == 0) {
-			photoServerConnection.sendGalleryView(galleryView);
-		} else {
-			throw new RuntimeException(exceptionString.toString());
+	private int countCompletedJobs(List<CompletableFuture<PhotoJob>> jobs) {
+		int count = 0;
+		for (CompletableFuture<PhotoJob> job : jobs) {
+			if (job != null && job.isDone() && !job.isCompletedExceptionally()) {
+				count++;
+			}
 		}
-
-		return exceptionCounter;
+		return count;
 	}
 
 	private String lookupGalleryViewBaseUrl(String albumKey) {
@@ -376,24 +527,17 @@ public class Processor {
 		return baseUrl;
 	}
 
-	private void viewStatusMessage(Album album, String albumStatus, int totalPhotosToProcess,
-			int totalPhotosProcessed, int j, int exceptionCounter) {
+	private void viewProgress(Album album, int albumNumber, int j, int exceptionCounter) {
 
-		String msg = albumStatus + ",   Datei " + j + " von " + album.getPhotoRemoteNamesOutOfSync().size();
-		msg += ",   Gesamt " + (totalPhotosProcessed + j) + " von " + totalPhotosToProcess;
-		if (exceptionCounter > 0) {
-			msg += ", " + exceptionCounter + " Fehler";
-		}
-		String est = estimatedUploadTime.estimatedTime();
-		if (est != null) {
-			msg += "\n" + est + " verbleibend";
-		}
-		gui.viewMessage(msg);
+		view.viewProgress(new SyncProgress(album.getKey(), albumNumber, albumsToProcess, j,
+				album.getPhotoRemoteNamesOutOfSync().size(), photosProcessed.incrementAndGet(), photosToProcess,
+				exceptionCounter, estimatedUploadTime.estimatedSeconds()));
 	}
 
 	public void exit() {
-		FileUtils.deleteQuietly(new File(properties.getProperty("tempFilePath") + "/photos_frame.bmp"));
-		FileUtils.deleteQuietly(new File(properties.getProperty("tempFilePath") + "/photos_resized.mp4"));
+		albumPool.shutdownNow();
+		photoPipeline.shutdown();
+		tempWorkspace.cleanUp();
 		System.exit(0);
 	}
 
@@ -401,6 +545,11 @@ public class Processor {
 		return users;
 	}
 
+	private int intProperty(String key, int defaultValue) {
+		String value = StringUtils.trimToNull(properties.getProperty(key));
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
 	public Properties getApplicationProperties() {
 
 		Properties properties = new Properties();
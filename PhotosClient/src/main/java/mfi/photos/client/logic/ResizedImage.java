@@ -1,5 +1,7 @@
 package mfi.photos.client.logic;
 
+import java.awt.image.BufferedImage;
+
 public class ResizedImage {
 
 	private int height;
@@ -8,6 +10,12 @@ public class ResizedImage {
 
 	private byte[] bytes;
 
+	// bytes may be a pooled buffer, larger than the image
+	private int length;
+
+	// raster the bytes were encoded from, only if kept for further renditions
+	private BufferedImage image;
+
 	public int getHeight() {
 		return height;
 	}
@@ -29,6 +37,23 @@ public class ResizedImage {
 	}
 
 	public void setBytes(byte[] bytes) {
+		setBytes(bytes, bytes == null ? 0 : bytes.length);
+	}
+
+	public void setBytes(byte[] bytes, int length) {
 		this.bytes = bytes;
+		this.length = length;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	public void setImage(BufferedImage image) {
+		this.image = image;
 	}
 }
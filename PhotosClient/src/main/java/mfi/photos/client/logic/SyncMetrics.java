@@ -0,0 +1,160 @@
+package mfi.photos.client.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Time and bytes per processing stage of a sync run. Stages are measured per
+ * call on the calling thread, so totals of parallel stages may exceed the
+ * wall time of the run.
+ */
+public class SyncMetrics {
+
+	public enum Stage {
+		READ, DECODE, EXIF, ROTATE, RESIZE, JPEG_ENCODE, FFPROBE, FFMPEG, AES_ENCRYPT, BASE64, HTTP_POST;
+	}
+
+	private Map<Stage, StageTimes> stages = new EnumMap<>(Stage.class);
+	private long runStartNanos;
+	private Date runStart;
+
+	public SyncMetrics() {
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new StageTimes());
+		}
+		reset();
+	}
+
+	public synchronized void reset() {
+		for (StageTimes stageTimes : stages.values()) {
+			stageTimes.reset();
+		}
+		runStartNanos = System.nanoTime();
+		runStart = new Date();
+	}
+
+	public long start() {
+		return System.nanoTime();
+	}
+
+	public void stop(Stage stage, long startNanos, long bytes) {
+		record(stage, System.nanoTime() - startNanos, bytes);
+	}
+
+	public void record(Stage stage, long nanos, long bytes) {
+		stages.get(stage).add(nanos, bytes);
+	}
+
+	/**
+	 * Writes the report of the current run as json and csv file.
+	 *
+	 * @return the json file
+	 */
+	public synchronized File writeReport(String reportPath) throws IOException {
+
+		Report report = new Report();
+		report.start = runStart.toString();
+		report.wallMillis = (System.nanoTime() - runStartNanos) / 1_000_000L;
+		for (Map.Entry<Stage, StageTimes> entry : stages.entrySet()) {
+			report.stages.add(entry.getValue().report(entry.getKey()));
+		}
+
+		String name = "sync_report_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(runStart);
+		File jsonFile = new File(reportPath, name + ".json");
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		FileUtils.writeStringToFile(jsonFile, gson.toJson(report), StandardCharsets.UTF_8);
+
+		StringBuilder csv = new StringBuilder();
+		csv.append("stage;count;totalMillis;bytes;p50Millis;p90Millis;p99Millis;maxMillis;mbPerSecond\n");
+		for (StageReport stageReport : report.stages) {
+			csv.append(String.format(Locale.ROOT, "%s;%d;%d;%d;%.3f;%.3f;%.3f;%.3f;%.2f\n", stageReport.stage,
+					stageReport.count, stageReport.totalMillis, stageReport.bytes, stageReport.p50Millis,
+					stageReport.p90Millis, stageReport.p99Millis, stageReport.maxMillis, stageReport.mbPerSecond));
+		}
+		FileUtils.writeStringToFile(new File(reportPath, name + ".csv"), csv.toString(), StandardCharsets.UTF_8);
+		return jsonFile;
+	}
+
+	private static class StageTimes {
+
+		private long[] samples;
+		private int count;
+		private long totalNanos;
+		private long bytes;
+
+		private synchronized void reset() {
+			samples = new long[256];
+			count = 0;
+			totalNanos = 0;
+			bytes = 0;
+		}
+
+		private synchronized void add(long nanos, long addBytes) {
+			if (count == samples.length) {
+				samples = Arrays.copyOf(samples, count * 2);
+			}
+			samples[count++] = nanos;
+			totalNanos += nanos;
+			bytes += addBytes;
+		}
+
+		private synchronized StageReport report(Stage stage) {
+
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+
+			StageReport stageReport = new StageReport();
+			stageReport.stage = stage.name();
+			stageReport.count = count;
+			stageReport.totalMillis = totalNanos / 1_000_000L;
+			stageReport.bytes = bytes;
+			stageReport.p50Millis = percentileMillis(sorted, 50);
+			stageReport.p90Millis = percentileMillis(sorted, 90);
+			stageReport.p99Millis = percentileMillis(sorted, 99);
+			stageReport.maxMillis = count == 0 ? 0 : sorted[count - 1] / 1_000_000d;
+			stageReport.mbPerSecond = totalNanos == 0 ? 0 : (bytes / 1024d / 1024d) / (totalNanos / 1e9d);
+			return stageReport;
+		}
+
+		private static double percentileMillis(long[] sorted, int percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+			return sorted[Math.max(index, 0)] / 1_000_000d;
+		}
+	}
+
+	private static class Report {
+		private String start;
+		private long wallMillis;
+		private List<StageReport> stages = new LinkedList<>();
+	}
+
+	private static class StageReport {
+		private String stage;
+		private int count;
+		private long totalMillis;
+		private long bytes;
+		private double p50Millis;
+		private double p90Millis;
+		private double p99Millis;
+		private double maxMillis;
+		private double mbPerSecond;
+	}
+
+}
@@ -0,0 +1,25 @@
+package mfi.photos.client.logic;
+
+import mfi.photos.client.model.SyncProgress;
+
+/**
+ * Everything the Processor reports to or asks from its user interface, the
+ * swing gui as well as the headless batch mode.
+ */
+public interface SyncView {
+
+	public void viewMessage(String messageString);
+
+	public void appendMessage(String messageString);
+
+	public void viewProgress(SyncProgress progress);
+
+	public boolean isCancel();
+
+	public void showConnectionError();
+
+	public void clearTable();
+
+	public void addRow(String key, Boolean sync, String album, String photoCount, String status, Boolean[] userFlag);
+
+}
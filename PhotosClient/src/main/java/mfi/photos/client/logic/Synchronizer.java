@@ -51,7 +51,16 @@ public class Synchronizer {
 
 		syncModel.getAlbums().clear();
 
-		// LOCAL
+		readLocalAlbums(syncModel);
+		hashLocalAlbums(syncModel);
+		compareWithRemote(syncModel, photoServerConnection);
+	}
+
+	/**
+	 * Local scan: album directories and their photo files.
+	 */
+	void readLocalAlbums(SyncModel syncModel) {
+
 		File[] listFiles = new File(syncModel.getLocalBasePath())
 				.listFiles((FileFilter) DirectoryFileFilter.DIRECTORY);
 		for (File file : listFiles) {
@@ -62,8 +71,20 @@ public class Synchronizer {
 			}
 		}
 		syncModel.sortAlbums();
+	}
+
+	void hashLocalAlbums(SyncModel syncModel) {
+
+		for (Album album : syncModel.getAlbums()) {
+			for (Photo photo : album.getPhotos()) {
+				calculatePhotoHash(photo);
+			}
+			album.setHashLocal(album.lookupAlbumHash());
+		}
+	}
+
+	void compareWithRemote(SyncModel syncModel, PhotosServerConnection photoServerConnection) throws Exception {
 
-		// REMOTE AND COMPARING
 		Map<String, String> remoteAlbumKeysAndHashes = photoServerConnection.readAlbumKeysAndHashes();
 		for (Album album : syncModel.getAlbums()) {
 			if (remoteAlbumKeysAndHashes.containsKey(album.getKey())) {
@@ -148,20 +169,17 @@ public class Synchronizer {
 			Photo photo = new Photo(photoFile);
 			String suffix = StringUtils.substringAfterLast(photoFile.getName(), ".").toLowerCase();
 			photo.setVideo(VIDEO_TYPES.contains(suffix));
-			calculatePhotoHash(photo, photoFile);
 			album.getPhotos().add(photo);
 		}
-
-		album.setHashLocal(album.lookupAlbumHash());
 	}
 
-	private void calculatePhotoHash(Photo photo, File photoFile) {
+	private void calculatePhotoHash(Photo photo) {
 
 		String syncStatusIdent;
 		if (photo.isVideo()) {
-			syncStatusIdent = photoFile.lastModified() + "#" + photoFile.length() + "#v3";
+			syncStatusIdent = photo.getLocalLastModified() + "#" + photo.getLocalFileSize() + "#v3";
 		} else {
-			syncStatusIdent = photoFile.lastModified() + "#" + photoFile.length() + "#v1";
+			syncStatusIdent = photo.getLocalLastModified() + "#" + photo.getLocalFileSize() + "#v1";
 		}
 		String syncStatusHash = org.apache.commons.codec.binary.Base64
 				.encodeBase64URLSafeString(syncStatusIdent.getBytes(StandardCharsets.UTF_8));
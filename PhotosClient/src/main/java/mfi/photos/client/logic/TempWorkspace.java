@@ -0,0 +1,161 @@
+package mfi.photos.client.logic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Temp files of jobs running in parallel. Every job gets its own directory,
+ * deleted with all its files when the job is closed. Files are reserved with
+ * their expected size: the optional RAM backed directory is used while it has
+ * room. The first reservation of a job on disk blocks while the disk cap is
+ * reached, until other jobs are closed. Later reservations of a job already
+ * holding room never block, waiting with room held could deadlock the job with
+ * itself or with other waiting jobs - a job should reserve most of its room
+ * with its first file.
+ */
+public class TempWorkspace {
+
+	private static final String WORKSPACE_DIR_NAME = "photos_work";
+	private static final String JOB_DIR_PREFIX = "job_";
+
+	private Area disk;
+	private Area ram;
+
+	/**
+	 * @param diskCapBytes
+	 *            0 for no cap
+	 * @param ramPath
+	 *            RAM backed directory like /dev/shm, null for none
+	 */
+	public TempWorkspace(String tempFilePath, long diskCapBytes, String ramPath, long ramCapBytes) {
+		disk = new Area(new File(tempFilePath, WORKSPACE_DIR_NAME), diskCapBytes);
+		if (StringUtils.isNotBlank(ramPath)) {
+			ram = new Area(new File(ramPath, WORKSPACE_DIR_NAME), ramCapBytes);
+		}
+		// left over by a crashed run
+		cleanUp();
+	}
+
+	public JobDir open() {
+		return new JobDir();
+	}
+
+	/**
+	 * Deletes the directories of all jobs.
+	 */
+	public void cleanUp() {
+		FileUtils.deleteQuietly(disk.root);
+		if (ram != null) {
+			FileUtils.deleteQuietly(ram.root);
+		}
+	}
+
+	/**
+	 * Temp files of one job. Used by one stage at a time, not thread safe.
+	 */
+	public class JobDir implements Closeable {
+
+		private File diskDir;
+		private File ramDir;
+		private long diskReserved;
+		private long ramReserved;
+
+		private JobDir() {
+		}
+
+		/**
+		 * A new unique file name, the file itself is not created - the external
+		 * tools create it. Blocks while the disk cap is reached.
+		 */
+		public File newFile(String prefix, String suffix, long expectedBytes)
+				throws IOException, InterruptedException {
+
+			if (ram != null && ram.tryReserve(expectedBytes)) {
+				ramReserved += expectedBytes;
+				if (ramDir == null) {
+					ramDir = ram.createJobDir();
+				}
+				return uniqueFile(ramDir, prefix, suffix);
+			}
+			disk.reserve(expectedBytes, diskReserved > 0);
+			diskReserved += expectedBytes;
+			if (diskDir == null) {
+				diskDir = disk.createJobDir();
+			}
+			return uniqueFile(diskDir, prefix, suffix);
+		}
+
+		/**
+		 * Deletes all files of the job and frees its reservations.
+		 */
+		@Override
+		public void close() {
+			FileUtils.deleteQuietly(diskDir);
+			FileUtils.deleteQuietly(ramDir);
+			diskDir = null;
+			ramDir = null;
+			disk.release(diskReserved);
+			diskReserved = 0;
+			if (ram != null) {
+				ram.release(ramReserved);
+				ramReserved = 0;
+			}
+		}
+
+		private File uniqueFile(File dir, String prefix, String suffix) throws IOException {
+			File file = File.createTempFile(prefix, suffix, dir);
+			FileUtils.deleteQuietly(file);
+			return file;
+		}
+	}
+
+	private static class Area {
+
+		private File root;
+		private long capBytes;
+		private long reservedBytes;
+
+		private Area(File root, long capBytes) {
+			this.root = root;
+			this.capBytes = capBytes;
+		}
+
+		/**
+		 * @param holdingRoom
+		 *            the job already holds reservations, granted without waiting
+		 */
+		private synchronized void reserve(long bytes, boolean holdingRoom) throws InterruptedException {
+			// a job larger than the cap gets the area on its own
+			while (!holdingRoom && capBytes > 0 && reservedBytes > 0 && reservedBytes + bytes > capBytes) {
+				wait();
+			}
+			reservedBytes += bytes;
+		}
+
+		private synchronized boolean tryReserve(long bytes) {
+			if (reservedBytes + bytes > capBytes) {
+				return false;
+			}
+			reservedBytes += bytes;
+			return true;
+		}
+
+		private synchronized void release(long bytes) {
+			if (bytes > 0) {
+				reservedBytes -= bytes;
+				notifyAll();
+			}
+		}
+
+		private File createJobDir() throws IOException {
+			FileUtils.forceMkdir(root);
+			return Files.createTempDirectory(root.toPath(), JOB_DIR_PREFIX).toFile();
+		}
+	}
+
+}
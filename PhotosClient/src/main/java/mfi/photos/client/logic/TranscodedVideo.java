@@ -0,0 +1,30 @@
+package mfi.photos.client.logic;
+
+import java.io.File;
+
+/**
+ * Video for upload with its preview image, created by the same ffmpeg run.
+ */
+public class TranscodedVideo {
+
+	private File file;
+
+	private ResizedImage previewImage;
+
+	public TranscodedVideo(File file, ResizedImage previewImage) {
+		this.file = file;
+		this.previewImage = previewImage;
+	}
+
+	/**
+	 * The transcoded video, or the original file if it is uploaded as it is.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	public ResizedImage getPreviewImage() {
+		return previewImage;
+	}
+
+}
@@ -0,0 +1,243 @@
+package mfi.photos.client.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import mfi.photos.client.model.Photo;
+
+/**
+ * On-disk journal of an album sync, one json file per album. Holds the
+ * photos completely uploaded, the chunks confirmed for files in upload and
+ * transcoded videos kept for the next run. The journal of an album is
+ * removed as soon as its gallery view is sent.
+ */
+public class UploadJournal {
+
+	private File journalDir;
+
+	private Gson gson = new GsonBuilder().create();
+
+	private Map<String, AlbumJournal> albums = new HashMap<>();
+
+	public UploadJournal(String journalPath) {
+		journalDir = new File(journalPath);
+	}
+
+	public synchronized PhotoEntry lookupCompletedPhoto(String albumKey, Photo photo) {
+		PhotoEntry entry = load(albumKey).photos.get(photo.getRemoteName(null));
+		if (entry != null && entry.completed && StringUtils.equals(entry.localHash, photo.getLocalHash())) {
+			return entry;
+		}
+		return null;
+	}
+
+	public synchronized void completePhoto(String albumKey, Photo photo, int thumbnailHeight, int thumbnailWidth,
+			int height, int width, long remoteFileSize) {
+		PhotoEntry entry = new PhotoEntry();
+		entry.localHash = photo.getLocalHash();
+		entry.completed = true;
+		entry.thumbnailHeight = thumbnailHeight;
+		entry.thumbnailWidth = thumbnailWidth;
+		entry.height = height;
+		entry.width = width;
+		entry.remoteFileSize = remoteFileSize;
+		PhotoEntry previous = load(albumKey).photos.put(photo.getRemoteName(null), entry);
+		save(albumKey);
+		if (previous != null && previous.transcodedVideo != null) {
+			// uploaded, not needed for a later run any more
+			FileUtils.deleteQuietly(new File(previous.transcodedVideo));
+		}
+	}
+
+	public synchronized File lookupTranscodedVideo(String albumKey, Photo photo) {
+		PhotoEntry entry = load(albumKey).photos.get(photo.getRemoteName(null));
+		if (entry != null && entry.transcodedVideo != null
+				&& StringUtils.equals(entry.localHash, photo.getLocalHash())) {
+			File file = new File(entry.transcodedVideo);
+			if (file.exists()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Moves a transcoded video into the journal directory before its upload,
+	 * so an interrupted upload can resume with the same file instead of a new
+	 * transcoding. The file is deleted when the photo is complete.
+	 */
+	public synchronized File keepTranscodedVideo(String albumKey, Photo photo, File transcodedVideo)
+			throws IOException {
+		File albumDir = new File(journalDir, albumKey);
+		File keptFile = new File(albumDir, photo.getRemoteName(null));
+		if (!transcodedVideo.equals(keptFile)) {
+			FileUtils.forceMkdir(albumDir);
+			Files.move(transcodedVideo.toPath(), keptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		PhotoEntry entry = new PhotoEntry();
+		entry.localHash = photo.getLocalHash();
+		entry.transcodedVideo = keptFile.getAbsolutePath();
+		load(albumKey).photos.put(photo.getRemoteName(null), entry);
+		save(albumKey);
+		return keptFile;
+	}
+
+	public synchronized FileEntry lookupFile(String albumKey, String filename) {
+		return load(albumKey).files.get(filename);
+	}
+
+	public synchronized void startFile(String albumKey, String filename, long length, byte[] header) {
+		load(albumKey).files.put(filename, new FileEntry(length, header));
+		save(albumKey);
+	}
+
+	public synchronized void confirmChunk(String albumKey, String filename, int encryptedLength,
+			String plainDigest) {
+		FileEntry entry = load(albumKey).files.get(filename);
+		entry.chunks++;
+		entry.bytes += encryptedLength;
+		entry.digest = plainDigest;
+		save(albumKey);
+	}
+
+	public synchronized void removeFile(String albumKey, String filename) {
+		if (load(albumKey).files.remove(filename) != null) {
+			save(albumKey);
+		}
+	}
+
+	public synchronized void clearAlbum(String albumKey) {
+		albums.remove(albumKey);
+		FileUtils.deleteQuietly(journalFile(albumKey));
+		FileUtils.deleteQuietly(new File(journalDir, albumKey));
+	}
+
+	private AlbumJournal load(String albumKey) {
+
+		AlbumJournal albumJournal = albums.get(albumKey);
+		if (albumJournal == null) {
+			File file = journalFile(albumKey);
+			if (file.exists()) {
+				try {
+					albumJournal = gson.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8),
+							AlbumJournal.class);
+				} catch (Exception e) {
+					System.out.println("journal not readable, ignoring: " + file.getAbsolutePath() + " - " + e);
+				}
+			}
+			if (albumJournal == null) {
+				albumJournal = new AlbumJournal();
+			}
+			albums.put(albumKey, albumJournal);
+		}
+		return albumJournal;
+	}
+
+	private void save(String albumKey) {
+
+		File file = journalFile(albumKey);
+		File tempFile = new File(journalDir, albumKey + ".json.tmp");
+		try {
+			FileUtils.forceMkdir(journalDir);
+			FileUtils.writeStringToFile(tempFile, gson.toJson(albums.get(albumKey)), StandardCharsets.UTF_8);
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException("journal could not be written: " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private File journalFile(String albumKey) {
+		return new File(journalDir, albumKey + ".json");
+	}
+
+	private static class AlbumJournal {
+		private Map<String, PhotoEntry> photos = new HashMap<>();
+		private Map<String, FileEntry> files = new HashMap<>();
+	}
+
+	public static class PhotoEntry {
+
+		private String localHash;
+		private boolean completed;
+		private int thumbnailHeight;
+		private int thumbnailWidth;
+		private int height;
+		private int width;
+		private long remoteFileSize;
+		private String transcodedVideo;
+
+		public int getThumbnailHeight() {
+			return thumbnailHeight;
+		}
+
+		public int getThumbnailWidth() {
+			return thumbnailWidth;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public long getRemoteFileSize() {
+			return remoteFileSize;
+		}
+	}
+
+	/**
+	 * Upload state of a single remote file: the encryption header and the
+	 * payload chunks confirmed by the server, with the md5 of their plain
+	 * data.
+	 */
+	public static class FileEntry {
+
+		private long length;
+		private String header;
+		private long chunks;
+		private long bytes;
+		private String digest;
+
+		private FileEntry(long length, byte[] header) {
+			this.length = length;
+			this.header = Base64.getEncoder().encodeToString(header);
+			this.bytes = header.length;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public byte[] getHeader() {
+			return Base64.getDecoder().decode(header);
+		}
+
+		public long getChunks() {
+			return chunks;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public String getDigest() {
+			return digest;
+		}
+	}
+
+}
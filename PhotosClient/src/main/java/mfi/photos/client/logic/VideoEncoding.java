@@ -0,0 +1,175 @@
+package mfi.photos.client.logic;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoder preset and threads for each transcoding. The profile sets the
+ * preset. With a target time per minute of footage, the slowest preset up to
+ * the one of the profile is chosen whose estimated time meets the target. The
+ * estimate is based on the measured speed of the previous transcodings. Long
+ * videos are split into segments transcoded in parallel, the threads of the
+ * transcoding are shared by the segments.
+ */
+public class VideoEncoding {
+
+	public enum Profile {
+		FAST("veryfast"), BALANCED("medium"), ARCHIVE("slow");
+
+		private String preset;
+
+		private Profile(String preset) {
+			this.preset = preset;
+		}
+
+		public String getPreset() {
+			return preset;
+		}
+	}
+
+	// x264 presets, fastest first, with their approx. relative encoding time
+	private static final List<String> PRESETS = Arrays.asList("ultrafast", "superfast", "veryfast", "faster",
+			"fast", "medium", "slow", "slower");
+	private static final double[] PRESET_COSTS = { 1.0, 1.6, 2.4, 3.6, 4.5, 5.5, 8.5, 17.0 };
+
+	// weight of the latest measurement
+	private static final double MEASUREMENT_WEIGHT = 0.3;
+
+	// x264 does not scale much beyond a few threads per encoder
+	private static final int MIN_SEGMENT_THREADS = 4;
+
+	private Profile profile;
+	private double targetSecondsPerMinute;
+	private int crf;
+	private int segmentSeconds;
+	private CpuBudget cpuBudget;
+
+	// wall seconds per minute of footage with one thread and cost 1, 0 until
+	// measured
+	private double secondsPerMinuteUnit;
+
+	/**
+	 * @param targetSecondsPerMinute
+	 *            wall clock seconds per minute of footage, 0 for the preset of
+	 *            the profile
+	 * @param crf
+	 *            constant rate factor capped at the target bitrate, 0 for the
+	 *            target bitrate as average bitrate
+	 * @param segmentSeconds
+	 *            length of the segments of long videos, 0 to never split
+	 */
+	public VideoEncoding(Profile profile, double targetSecondsPerMinute, int crf, int segmentSeconds,
+			CpuBudget cpuBudget) {
+		this.profile = profile;
+		this.targetSecondsPerMinute = targetSecondsPerMinute;
+		this.crf = crf;
+		this.segmentSeconds = segmentSeconds;
+		this.cpuBudget = cpuBudget;
+	}
+
+	/**
+	 * Plans a transcoding, finish it with {@link Job#finish(boolean)}.
+	 */
+	public Job start(double footageSeconds) {
+		int threads = cpuBudget.acquireFfmpegThreads();
+		return new Job(choosePreset(threads), threads, footageSeconds);
+	}
+
+	/**
+	 * Footage long enough to be split into segments, if there are threads
+	 * enough to transcode them in parallel.
+	 */
+	public boolean isSegmented(double footageSeconds) {
+		return segmentSeconds > 0 && footageSeconds >= 2 * segmentSeconds;
+	}
+
+	private synchronized String choosePreset(int threads) {
+
+		int maxIndex = PRESETS.indexOf(profile.getPreset());
+		if (targetSecondsPerMinute <= 0 || secondsPerMinuteUnit <= 0) {
+			return PRESETS.get(maxIndex);
+		}
+		for (int i = maxIndex; i > 0; i--) {
+			if (secondsPerMinuteUnit * PRESET_COSTS[i] / threads <= targetSecondsPerMinute) {
+				return PRESETS.get(i);
+			}
+		}
+		return PRESETS.get(0);
+	}
+
+	synchronized void record(String preset, int threads, double footageSeconds, long wallNanos) {
+
+		if (footageSeconds <= 0) {
+			return;
+		}
+		double wallSeconds = wallNanos / 1_000_000_000d;
+		double unit = wallSeconds / (footageSeconds / 60d) * threads / PRESET_COSTS[PRESETS.indexOf(preset)];
+		secondsPerMinuteUnit = secondsPerMinuteUnit <= 0 ? unit
+				: MEASUREMENT_WEIGHT * unit + (1 - MEASUREMENT_WEIGHT) * secondsPerMinuteUnit;
+	}
+
+	public class Job {
+
+		private String preset;
+		private int threads;
+		private int parallelSegments;
+		private double footageSeconds;
+		private long startNanos;
+
+		private Job(String preset, int threads, double footageSeconds) {
+			this.preset = preset;
+			this.threads = threads;
+			this.footageSeconds = footageSeconds;
+			this.parallelSegments = planParallelSegments();
+			this.startNanos = System.nanoTime();
+		}
+
+		private int planParallelSegments() {
+			if (!isSegmented(footageSeconds)) {
+				return 1;
+			}
+			int segments = (int) Math.ceil(footageSeconds / segmentSeconds);
+			return Math.max(1, Math.min(segments, threads / MIN_SEGMENT_THREADS));
+		}
+
+		public String getPreset() {
+			return preset;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public int getCrf() {
+			return crf;
+		}
+
+		public int getSegmentSeconds() {
+			return segmentSeconds;
+		}
+
+		/**
+		 * Segments transcoded at the same time, 1 to transcode the video as a
+		 * whole.
+		 */
+		public int getParallelSegments() {
+			return parallelSegments;
+		}
+
+		public int getSegmentThreads() {
+			return threads / parallelSegments;
+		}
+
+		/**
+		 * Gives the threads back, successful transcodings are measured. To be
+		 * called exactly once.
+		 */
+		public void finish(boolean success) {
+			cpuBudget.releaseFfmpegThreads(threads);
+			if (success) {
+				record(preset, threads, footageSeconds, System.nanoTime() - startNanos);
+			}
+		}
+	}
+
+}
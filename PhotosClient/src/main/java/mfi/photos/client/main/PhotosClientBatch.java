@@ -0,0 +1,185 @@
+package mfi.photos.client.main;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import mfi.photos.client.batch.BatchView;
+import mfi.photos.client.logic.Processor;
+
+/**
+ * Headless entry point, e.g. for cron jobs:
+ *
+ * <pre>
+ * PhotosClientBatch --all [--users Eric,Tom] [--dry-run]
+ * PhotosClientBatch --albums KeyOne,KeyTwo [--users Eric,Tom] [--dry-run]
+ * </pre>
+ *
+ * --all selects all albums out of sync, local only albums have to be named
+ * with --albums. Without --users the users currently set on the server are
+ * kept. Progress is written to stdout as one json object per line, all other
+ * output goes to stderr.
+ */
+public class PhotosClientBatch {
+
+	private static final int EXIT_OK = 0;
+	private static final int EXIT_SYNC_FAILED = 1;
+	private static final int EXIT_USAGE = 2;
+	private static final int EXIT_CONNECTION = 3;
+
+	private static final long SHUTDOWN_WAIT_MINUTES = 10L;
+
+	public static void main(String[] args) {
+
+		PrintStream events = System.out;
+		System.setOut(System.err);
+
+		BatchView view = new BatchView(events);
+		CountDownLatch finished = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			// SIGTERM / SIGINT: let running uploads complete, then stop
+			view.cancel();
+			try {
+				finished.await(SHUTDOWN_WAIT_MINUTES, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+
+		int exitCode;
+		try {
+			exitCode = run(args, view);
+		} catch (Exception e) {
+			e.printStackTrace();
+			view.error(e.toString());
+			exitCode = EXIT_SYNC_FAILED;
+		}
+		finished.countDown();
+		System.exit(exitCode);
+	}
+
+	private static int run(String[] args, BatchView view) throws Exception {
+
+		Arguments arguments = parseArguments(args);
+		if (arguments.error != null) {
+			view.error(arguments.error);
+			return EXIT_USAGE;
+		}
+		boolean all = arguments.all;
+		List<String> albumKeys = arguments.albumKeys;
+		List<String> userNames = arguments.userNames;
+
+		// scan
+		Processor processor = new Processor();
+		if (!processor.initializeHeadless(view)) {
+			return EXIT_CONNECTION;
+		}
+		String[] users = processor.getUsers();
+		if (userNames != null) {
+			for (String userName : userNames) {
+				if (!Arrays.asList(users).contains(userName)) {
+					view.error("unknown user: " + userName);
+					return EXIT_USAGE;
+				}
+			}
+		}
+		Map<String, BatchView.Row> rows = view.getRows();
+		for (BatchView.Row row : rows.values()) {
+			view.writeEvent("album", row);
+		}
+
+		// plan
+		List<BatchView.Row> rowList = new LinkedList<>(rows.values());
+		if (all) {
+			for (int row : processor.albumRowsOutOfSync()) {
+				if (!albumKeys.contains(rowList.get(row).getKey())) {
+					albumKeys.add(rowList.get(row).getKey());
+				}
+			}
+		}
+		Map<String, Boolean[]> keyAndUsers = new LinkedHashMap<>();
+		for (String key : albumKeys) {
+			BatchView.Row row = rows.get(key);
+			if (row == null) {
+				view.error("unknown album: " + key);
+				return EXIT_USAGE;
+			}
+			Boolean[] userFlags = row.getUserFlags();
+			if (userNames != null) {
+				userFlags = new Boolean[users.length];
+				for (int u = 0; u < users.length; u++) {
+					userFlags[u] = userNames.contains(users[u]);
+				}
+			}
+			keyAndUsers.put(key, userFlags);
+			view.writeEvent("plan", row);
+		}
+
+		if (arguments.dryRun || keyAndUsers.isEmpty()) {
+			view.writeEvent("done", new Result(true, keyAndUsers.size()));
+			return EXIT_OK;
+		}
+
+		// sync
+		boolean completed = processor.syncAlbumsByKeyAndUsers(keyAndUsers);
+		view.writeEvent("done", new Result(completed, keyAndUsers.size()));
+		return completed ? EXIT_OK : EXIT_SYNC_FAILED;
+	}
+
+	static Arguments parseArguments(String[] args) {
+
+		Arguments arguments = new Arguments();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--all")) {
+				arguments.all = true;
+			} else if (args[i].equals("--dry-run")) {
+				arguments.dryRun = true;
+			} else if (args[i].equals("--albums") && i + 1 < args.length) {
+				arguments.albumKeys.addAll(Arrays.asList(StringUtils.split(args[++i], ',')));
+			} else if (args[i].equals("--users") && i + 1 < args.length) {
+				arguments.userNames = Arrays.asList(StringUtils.split(args[++i], ','));
+			} else {
+				arguments.error = "unknown argument: " + args[i];
+				return arguments;
+			}
+		}
+		if (!arguments.all && arguments.albumKeys.isEmpty()) {
+			arguments.error = "usage: PhotosClientBatch (--all | --albums key,...) [--users name,...] [--dry-run]";
+		}
+		return arguments;
+	}
+
+	/**
+	 * Command line of a batch run, error set if it is not valid.
+	 */
+	static class Arguments {
+		boolean all;
+		boolean dryRun;
+		List<String> albumKeys = new LinkedList<>();
+		// null for the users of each album
+		List<String> userNames;
+		String error;
+	}
+
+	private static class Result {
+
+		@SuppressWarnings("unused")
+		private boolean completed;
+
+		@SuppressWarnings("unused")
+		private int albums;
+
+		private Result(boolean completed, int albums) {
+			this.completed = completed;
+			this.albums = albums;
+		}
+	}
+
+}
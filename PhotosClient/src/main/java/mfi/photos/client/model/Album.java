@@ -47,7 +47,7 @@ public class Album {
 		long sum = 0;
 		for (Photo photo : photos) {
 			if (photoRemoteNamesOutOfSync.contains(photo.getRemoteName(null))) {
-				sum += photo.getLocalFile().length();
+				sum += photo.getLocalFileSize();
 			}
 		}
 		return sum;
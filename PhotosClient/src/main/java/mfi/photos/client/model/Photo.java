@@ -1,7 +1,10 @@
 package mfi.photos.client.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
@@ -28,6 +31,11 @@ public class Photo {
 
 	private long remoteFileSize;
 
+	// -1 until the file is stat'ed, once per photo
+	private volatile long localFileSize = -1;
+
+	private long localLastModified;
+
 	public Photo(File file) {
 		this.localFile = file;
 		this.localName = file.getName();
@@ -81,6 +89,31 @@ public class Photo {
 		return localFile;
 	}
 
+	public long getLocalFileSize() {
+		readLocalFileAttributes();
+		return localFileSize;
+	}
+
+	public long getLocalLastModified() {
+		readLocalFileAttributes();
+		return localLastModified;
+	}
+
+	private void readLocalFileAttributes() {
+		if (localFileSize >= 0) {
+			return;
+		}
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
+			localLastModified = attributes.lastModifiedTime().toMillis();
+			localFileSize = attributes.size();
+		} catch (IOException e) {
+			// like File.length() and File.lastModified()
+			localLastModified = 0;
+			localFileSize = 0;
+		}
+	}
+
 	public boolean isVideo() {
 		return video;
 	}
@@ -0,0 +1,72 @@
+package mfi.photos.client.model;
+
+public class SyncProgress {
+
+	private String albumKey;
+
+	private int albumNumber;
+
+	private int albumCount;
+
+	private int albumFilesProcessed;
+
+	private int albumFilesToProcess;
+
+	private int filesProcessed;
+
+	private int filesToProcess;
+
+	private int errors;
+
+	private Integer estimatedSeconds;
+
+	public SyncProgress(String albumKey, int albumNumber, int albumCount, int albumFilesProcessed,
+			int albumFilesToProcess, int filesProcessed, int filesToProcess, int errors, Integer estimatedSeconds) {
+		this.albumKey = albumKey;
+		this.albumNumber = albumNumber;
+		this.albumCount = albumCount;
+		this.albumFilesProcessed = albumFilesProcessed;
+		this.albumFilesToProcess = albumFilesToProcess;
+		this.filesProcessed = filesProcessed;
+		this.filesToProcess = filesToProcess;
+		this.errors = errors;
+		this.estimatedSeconds = estimatedSeconds;
+	}
+
+	public String getAlbumKey() {
+		return albumKey;
+	}
+
+	public int getAlbumNumber() {
+		return albumNumber;
+	}
+
+	public int getAlbumCount() {
+		return albumCount;
+	}
+
+	public int getAlbumFilesProcessed() {
+		return albumFilesProcessed;
+	}
+
+	public int getAlbumFilesToProcess() {
+		return albumFilesToProcess;
+	}
+
+	public int getFilesProcessed() {
+		return filesProcessed;
+	}
+
+	public int getFilesToProcess() {
+		return filesToProcess;
+	}
+
+	public int getErrors() {
+		return errors;
+	}
+
+	public Integer getEstimatedSeconds() {
+		return estimatedSeconds;
+	}
+
+}
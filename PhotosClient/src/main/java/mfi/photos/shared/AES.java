@@ -51,6 +51,9 @@ public class AES {
 	private static final int BUFFER_SIZE_DEC = 1024 * 512; // 512k
 	private static final int BUFFER_SIZE_ENC = BUFFER_SIZE_DEC - 16;
 
+	public static final int PLAIN_CHUNK_SIZE = BUFFER_SIZE_ENC;
+	public static final int ENCRYPTED_CHUNK_SIZE = BUFFER_SIZE_DEC;
+
 	/**
 	 * @return a new pseudorandom salt of the specified length
 	 */
@@ -74,7 +77,7 @@ public class AES {
 	 *            the salt from which to derive the keys
 	 * @return a Keys object containing the two generated keys
 	 */
-	private static Keys keygen(int keyLength, char[] password, byte[] salt) {
+	static Keys keygen(int keyLength, char[] password, byte[] salt) {
 		SecretKeyFactory factory;
 		try {
 			factory = SecretKeyFactory.getInstance(KEYGEN_SPEC);
@@ -150,12 +153,53 @@ public class AES {
 		chunkConsumer.accept(headChunk);
 		bytesWritten += byteBuffer.capacity();
 
+		return bytesWritten + encryptChunks(encrypt, input, filename, dir, chunkConsumer);
+	}
+
+	/**
+	 * Continues an interrupted {@link #encrypt} with a consumer. Every payload
+	 * chunk is encrypted on its own, starting with the IV of the header, so a
+	 * chunk only depends on the header and its plain data.
+	 * 
+	 * @param header
+	 *            the head chunk of the interrupted encryption
+	 * @param startChunk
+	 *            number of payload chunks already consumed, input has to be
+	 *            positioned behind them (startChunk * PLAIN_CHUNK_SIZE)
+	 * @return the number of bytes written in total, including the header and
+	 *         the chunks skipped
+	 */
+	public static long encryptResume(byte[] header, long startChunk, char[] password, InputStream input,
+			String filename, String dir, Consumer<ChunkData> chunkConsumer) {
+
+		byte[] salt = Arrays.copyOfRange(header, LENGTH_PREFIX, LENGTH_PREFIX + SALT_LENGTH);
+		byte[] iv = Arrays.copyOfRange(header, header.length - FIX_IV_SIZE, header.length);
+		Keys keys = keygen(AES_KEY_LENGTH, password, salt);
+
+		Cipher encrypt = null;
+		try {
+			encrypt = Cipher.getInstance(CIPHER_SPEC);
+			encrypt.init(Cipher.ENCRYPT_MODE, keys.encryption, new IvParameterSpec(iv));
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidAlgorithmParameterException impossible) {
+		} catch (InvalidKeyException e) { // 192 or 256-bit AES not
+			throw new RuntimeException("AES key length not available:" + AES_KEY_LENGTH, e);
+		}
+
+		long bytesWritten = header.length + startChunk * ENCRYPTED_CHUNK_SIZE;
+		return bytesWritten + encryptChunks(encrypt, input, filename, dir, chunkConsumer);
+	}
+
+	private static long encryptChunks(Cipher encrypt, InputStream input, String filename, String dir,
+			Consumer<ChunkData> chunkConsumer) {
+
+		long bytesWritten = 0;
+
 		// read data from input into buffer, encrypt and write to output
 		byte[] buffer = new byte[BUFFER_SIZE_ENC];
 		int numRead;
 		byte[] encrypted = null;
 		try {
-			while ((numRead = input.read(buffer)) > 0) {
+			while ((numRead = readChunk(input, buffer)) > 0) {
 
 				try {
 					encrypted = encrypt.doFinal(buffer, 0, numRead);
@@ -175,6 +219,20 @@ public class AES {
 		return bytesWritten;
 	}
 
+	/**
+	 * Fills the buffer completely unless the end of the stream is reached -
+	 * decryption relies on full chunks.
+	 */
+	private static int readChunk(InputStream input, byte[] buffer) throws IOException {
+
+		int total = 0;
+		int numRead;
+		while (total < buffer.length && (numRead = input.read(buffer, total, buffer.length - total)) > 0) {
+			total += numRead;
+		}
+		return total;
+	}
+
 	public static void encrypt(long length, char[] password, InputStream input, OutputStream output) {
 
 		// sumPayload = 0;
@@ -342,7 +400,7 @@ public class AES {
 	/**
 	 * A tuple of encryption and authentication keys returned by {@link #keygen}
 	 */
-	private static class Keys {
+	static class Keys {
 		public final SecretKey encryption, authentication;
 
 		public Keys(SecretKey encryption, SecretKey authentication) {
@@ -0,0 +1,53 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CpuBudgetTest {
+
+	@Test
+	public void firstJobGetsAllIdleCores() {
+		CpuBudget budget = new CpuBudget(8);
+		assertEquals(8, budget.acquireFfmpegThreads());
+	}
+
+	@Test
+	public void javaWorkersKeepTheirCores() {
+		CpuBudget budget = new CpuBudget(8);
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		assertEquals(6, budget.acquireFfmpegThreads());
+		budget.releaseFfmpegThreads(6);
+		budget.javaWorkerFinished();
+		assertEquals(7, budget.acquireFfmpegThreads());
+	}
+
+	@Test
+	public void fairShareOfTheCoresNotGivenAway() {
+		CpuBudget budget = new CpuBudget(8);
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		assertEquals(4, budget.acquireFfmpegThreads());
+		budget.javaWorkerFinished();
+		budget.javaWorkerFinished();
+		budget.javaWorkerFinished();
+		budget.javaWorkerFinished();
+		// fair share 4, all 4 unused
+		assertEquals(4, budget.acquireFfmpegThreads());
+		// fair share 2, none unused
+		assertEquals(1, budget.acquireFfmpegThreads());
+	}
+
+	@Test
+	public void atLeastOneThread() {
+		CpuBudget budget = new CpuBudget(2);
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		budget.javaWorkerStarted();
+		assertEquals(1, budget.acquireFfmpegThreads());
+	}
+
+}
@@ -0,0 +1,71 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ImageOrientationTest {
+
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+
+	@Test
+	public void remapMatchesAffineTransformation() throws Exception {
+		for (int type : TYPES) {
+			BufferedImage image = randomImage(37, 23, type);
+			for (int orientation = 2; orientation <= 8; orientation++) {
+				assertSamePixels("type " + type + ", orientation " + orientation,
+						ImageProcessing.orientByTransformation(image, orientation),
+						ImageOrientation.remap(image, orientation));
+			}
+		}
+	}
+
+	@Test
+	public void largeImagesInParallelStripes() throws Exception {
+		BufferedImage image = randomImage(1201, 901, BufferedImage.TYPE_3BYTE_BGR);
+		for (int orientation : new int[] { 3, 6, 8 }) {
+			assertSamePixels("orientation " + orientation, ImageProcessing.orientByTransformation(image, orientation),
+					ImageOrientation.remap(image, orientation));
+		}
+	}
+
+	@Test
+	public void orientationOneIsTheImageItself() {
+		BufferedImage image = randomImage(4, 3, BufferedImage.TYPE_INT_RGB);
+		assertSame(image, ImageOrientation.remap(image, 1));
+		assertSame(image, ImageOrientation.remap(image, 0));
+	}
+
+	@Test
+	public void unsupportedLayout() {
+		assertNull(ImageOrientation.remap(new BufferedImage(4, 3, BufferedImage.TYPE_USHORT_GRAY), 6));
+	}
+
+	private static void assertSamePixels(String message, BufferedImage expected, BufferedImage actual) {
+		assertEquals(message, expected.getWidth(), actual.getWidth());
+		assertEquals(message, expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals(message + " at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	private static BufferedImage randomImage(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(42L);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, 0xff000000 | random.nextInt());
+			}
+		}
+		return image;
+	}
+
+}
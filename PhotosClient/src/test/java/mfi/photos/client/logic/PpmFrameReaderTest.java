@@ -0,0 +1,80 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class PpmFrameReaderTest {
+
+	@Test
+	public void framesUntilEndOfStream() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeFrame(out, "P6\n3 2\n255\n", 3, 2, 0);
+		// ffmpeg writes no comments, other encoders may
+		writeFrame(out, "P6\n# second frame\n2  1\n255\n", 2, 1, 100);
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+
+		assertFrame(PpmFrameReader.read(in), 3, 2, 0);
+		assertFrame(PpmFrameReader.read(in), 2, 1, 100);
+		assertNull(PpmFrameReader.read(in));
+	}
+
+	@Test(expected = IOException.class)
+	public void noPpmFrame() throws Exception {
+		PpmFrameReader.read(new ByteArrayInputStream("P3\n1 1\n255\n".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test(expected = IOException.class)
+	public void sixteenBitFrame() throws Exception {
+		PpmFrameReader.read(new ByteArrayInputStream("P6\n1 1\n65535\n".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedFrame() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeFrame(out, "P6\n3 2\n255\n", 3, 2, 0);
+		byte[] bytes = out.toByteArray();
+		PpmFrameReader.read(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+	}
+
+	private static void writeFrame(ByteArrayOutputStream out, String header, int width, int height, int seed)
+			throws IOException {
+		out.write(header.getBytes(StandardCharsets.US_ASCII));
+		for (int i = 0; i < width * height; i++) {
+			out.write(red(seed + i));
+			out.write(green(seed + i));
+			out.write(blue(seed + i));
+		}
+	}
+
+	private static void assertFrame(BufferedImage image, int width, int height, int seed) {
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+		for (int i = 0; i < width * height; i++) {
+			int rgb = image.getRGB(i % width, i / width) & 0xffffff;
+			assertEquals((red(seed + i) << 16) | (green(seed + i) << 8) | blue(seed + i), rgb);
+		}
+	}
+
+	private static int red(int i) {
+		return (i * 37) & 0xff;
+	}
+
+	private static int green(int i) {
+		return (i * 91 + 13) & 0xff;
+	}
+
+	private static int blue(int i) {
+		return (i * 7 + 200) & 0xff;
+	}
+
+}
@@ -0,0 +1,98 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TempWorkspaceTest {
+
+	private static final long MB = 1024L * 1024L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void diskCapBlocksUntilJobIsClosed() throws Exception {
+
+		TempWorkspace workspace = new TempWorkspace(folder.getRoot().getAbsolutePath(), 100 * MB, null, 0);
+		TempWorkspace.JobDir first = workspace.open();
+		first.newFile("photos_", ".mp4", 80 * MB);
+
+		TempWorkspace.JobDir second = workspace.open();
+		CompletableFuture<File> blocked = CompletableFuture.supplyAsync(() -> {
+			try {
+				return second.newFile("photos_", ".mp4", 40 * MB);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			blocked.get(300, TimeUnit.MILLISECONDS);
+			throw new AssertionError("second job not blocked by the disk cap");
+		} catch (TimeoutException e) {
+			// expected
+		}
+
+		first.close();
+		File file = blocked.get(5, TimeUnit.SECONDS);
+		assertTrue(file.getParentFile().isDirectory());
+		second.close();
+		assertFalse(file.getParentFile().exists());
+	}
+
+	@Test
+	public void jobHoldingRoomIsNotBlocked() throws Exception {
+
+		TempWorkspace workspace = new TempWorkspace(folder.getRoot().getAbsolutePath(), 100 * MB, null, 0);
+		TempWorkspace.JobDir job = workspace.open();
+		File video = job.newFile("photos_", ".mp4", 80 * MB);
+		// would wait for itself otherwise
+		File segment = CompletableFuture.supplyAsync(() -> {
+			try {
+				return job.newFile("photos_", ".mov", 80 * MB);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}).get(5, TimeUnit.SECONDS);
+		assertEquals(video.getParentFile(), segment.getParentFile());
+		job.close();
+	}
+
+	@Test
+	public void jobLargerThanTheCapIsNotBlocked() throws Exception {
+
+		TempWorkspace workspace = new TempWorkspace(folder.getRoot().getAbsolutePath(), 100 * MB, null, 0);
+		TempWorkspace.JobDir job = workspace.open();
+		assertTrue(job.newFile("photos_", ".mp4", 500 * MB).getParentFile().isDirectory());
+		job.close();
+	}
+
+	@Test
+	public void ramIsUsedWhileItHasRoom() throws Exception {
+
+		File diskRoot = folder.newFolder("disk");
+		File ramRoot = folder.newFolder("ram");
+		TempWorkspace workspace = new TempWorkspace(diskRoot.getAbsolutePath(), 0, ramRoot.getAbsolutePath(),
+				10 * MB);
+		TempWorkspace.JobDir job = workspace.open();
+		File inRam = job.newFile("photos_", ".ppm", 6 * MB);
+		File onDisk = job.newFile("photos_", ".ppm", 6 * MB);
+		assertTrue(inRam.getAbsolutePath().startsWith(ramRoot.getAbsolutePath()));
+		assertTrue(onDisk.getAbsolutePath().startsWith(diskRoot.getAbsolutePath()));
+
+		job.close();
+		TempWorkspace.JobDir next = workspace.open();
+		assertTrue(next.newFile("photos_", ".ppm", 6 * MB).getAbsolutePath().startsWith(ramRoot.getAbsolutePath()));
+		next.close();
+	}
+
+}
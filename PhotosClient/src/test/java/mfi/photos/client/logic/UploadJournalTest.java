@@ -0,0 +1,60 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mfi.photos.client.model.Photo;
+
+public class UploadJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keptVideoSurvivesUntilComplete() throws IOException {
+
+		File journalDir = new File(folder.getRoot(), "journal");
+		Photo photo = video("hash1");
+		File transcoded = folder.newFile("transcoded.mp4");
+		FileUtils.writeStringToFile(transcoded, "video", StandardCharsets.UTF_8);
+
+		File kept = new UploadJournal(journalDir.getAbsolutePath()).keepTranscodedVideo("album", photo,
+				transcoded);
+		assertFalse(transcoded.exists());
+		assertTrue(kept.getAbsolutePath().startsWith(journalDir.getAbsolutePath()));
+
+		// next run, e.g. after a crash
+		UploadJournal journal = new UploadJournal(journalDir.getAbsolutePath());
+		assertEquals(kept, journal.lookupTranscodedVideo("album", photo));
+		assertNull(journal.lookupTranscodedVideo("album", video("hash2")));
+		assertNull(journal.lookupCompletedPhoto("album", photo));
+
+		journal.completePhoto("album", photo, 90, 120, 720, 960, 5L);
+		assertFalse(kept.exists());
+		UploadJournal.PhotoEntry entry = new UploadJournal(journalDir.getAbsolutePath())
+				.lookupCompletedPhoto("album", photo);
+		assertNotNull(entry);
+		assertEquals(720, entry.getHeight());
+		assertEquals(5L, entry.getRemoteFileSize());
+	}
+
+	private Photo video(String hash) {
+		Photo photo = new Photo(new File(folder.getRoot(), "movie.mov"));
+		photo.setVideo(true);
+		photo.setLocalHash(hash);
+		return photo;
+	}
+
+}
@@ -0,0 +1,89 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.lang3.math.Fraction;
+import org.junit.Test;
+
+import mfi.photos.client.model.Dimension;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+
+public class VideoBitrateTest {
+
+	private static final Dimension HD_720 = new Dimension(1280, 720);
+
+	@Test
+	public void referenceFor720p() {
+		assertBitrate(2_488_320, stream(1920, 1080, "h264", 30, 1), 60, 0, HD_720);
+	}
+
+	@Test
+	public void portraitLikeLandscape() {
+		assertBitrate(2_488_320, stream(1080, 1920, "h264", 30, 1), 60, 0, new Dimension(720, 1280));
+	}
+
+	@Test
+	public void higherFrameRate() {
+		assertBitrate(4_184_838, stream(1920, 1080, "h264", 60, 1), 60, 0, HD_720);
+	}
+
+	@Test
+	public void ntscFrameRate() {
+		assertBitrate(2_486_456, stream(1920, 1080, "h264", 30000, 1001), 60, 0, HD_720);
+	}
+
+	@Test
+	public void unknownFrameRate() {
+		assertBitrate(2_488_320, stream(1920, 1080, "h264", 0, 0), 60, 0, HD_720);
+	}
+
+	@Test
+	public void shortClips() {
+		// no reduction from the reference duration on
+		assertBitrate(2_488_320, stream(1920, 1080, "h264", 30, 1), 30, 0, HD_720);
+		assertBitrate(2_088_641, stream(1920, 1080, "h264", 30, 1), 12.5, 0, HD_720);
+		// at least the min. factor
+		assertBitrate(1_741_824, stream(1920, 1080, "h264", 30, 1), 1, 0, HD_720);
+		// unknown duration
+		assertBitrate(2_488_320, stream(1920, 1080, "h264", 30, 1), 0, 0, HD_720);
+	}
+
+	@Test
+	public void cappedBySource() {
+		assertBitrate(1_088_662, stream(1920, 1080, "h264", 30, 1), 60, 2_000_000, HD_720);
+		// source needs less than the model
+		assertBitrate(2_000_000, stream(1280, 720, "h264", 30, 1), 60, 2_000_000, HD_720);
+		// model needs less than the source
+		assertBitrate(2_488_320, stream(1920, 1080, "h264", 30, 1), 60, 20_000_000, HD_720);
+	}
+
+	@Test
+	public void efficientSourceCodec() {
+		assertBitrate(1_632_993, stream(1920, 1080, "hevc", 30, 1), 60, 2_000_000, HD_720);
+	}
+
+	@Test
+	public void minimumBitrate() {
+		assertBitrate(400_000, stream(1920, 1080, "h264", 30, 1), 60, 100_000, HD_720);
+		assertBitrate(400_000, stream(320, 240, "h264", 30, 1), 60, 0, new Dimension(320, 240));
+	}
+
+	private static void assertBitrate(long expected, FFmpegStream stream, double durationSeconds,
+			long sourceBitrate, Dimension targetSize) {
+		assertEquals(expected,
+				ImageProcessing.calculateTargetBitrate(stream, durationSeconds, sourceBitrate, targetSize), 1);
+	}
+
+	private static FFmpegStream stream(int width, int height, String codec, int rateNumerator,
+			int rateDenominator) {
+		FFmpegStream stream = new FFmpegStream();
+		stream.width = width;
+		stream.height = height;
+		stream.codec_name = codec;
+		if (rateDenominator > 0) {
+			stream.avg_frame_rate = Fraction.getFraction(rateNumerator, rateDenominator);
+		}
+		return stream;
+	}
+
+}
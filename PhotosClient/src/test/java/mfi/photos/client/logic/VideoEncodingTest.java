@@ -0,0 +1,96 @@
+package mfi.photos.client.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VideoEncodingTest {
+
+	private static final long SECOND_NANOS = 1_000_000_000L;
+
+	@Test
+	public void presetOfTheProfileUntilMeasured() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.BALANCED, 30, 0, 0, new CpuBudget(4));
+		assertEquals("medium", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void presetOfTheProfileWithoutTarget() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.BALANCED, 0, 0, 0, new CpuBudget(4));
+		encoding.record("medium", 4, 60, 600 * SECOND_NANOS);
+		assertEquals("medium", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void slowestPresetMeetingTheTarget() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.BALANCED, 30, 0, 0, new CpuBudget(4));
+		// 60s per minute with medium on 4 threads: fast 49s, faster 39s,
+		// veryfast 26s
+		encoding.record("medium", 4, 60, 60 * SECOND_NANOS);
+		assertEquals("veryfast", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void presetScalesWithThreads() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.BALANCED, 30, 0, 0, new CpuBudget(8));
+		encoding.record("medium", 4, 60, 58 * SECOND_NANOS);
+		// half the time on 8 threads
+		assertEquals("medium", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void neverSlowerThanTheProfile() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.FAST, 30, 0, 0, new CpuBudget(4));
+		encoding.record("veryfast", 4, 60, SECOND_NANOS);
+		assertEquals("veryfast", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void fastestPresetIfNoneMeetsTheTarget() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.ARCHIVE, 30, 0, 0, new CpuBudget(4));
+		encoding.record("slow", 4, 60, 6000 * SECOND_NANOS);
+		assertEquals("ultrafast", encoding.start(60).getPreset());
+	}
+
+	@Test
+	public void threadsGivenBackOnFinish() {
+		CpuBudget budget = new CpuBudget(4);
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.FAST, 0, 0, 0, budget);
+		VideoEncoding.Job job = encoding.start(60);
+		assertEquals(4, job.getThreads());
+		job.finish(false);
+		assertEquals(4, encoding.start(60).getThreads());
+	}
+
+	@Test
+	public void segmentsOfLongVideos() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.FAST, 0, 0, 120, new CpuBudget(16));
+		assertFalse(encoding.isSegmented(239));
+		assertTrue(encoding.isSegmented(240));
+
+		VideoEncoding.Job job = encoding.start(1800);
+		assertEquals(4, job.getParallelSegments());
+		assertEquals(4, job.getSegmentThreads());
+		job.finish(false);
+
+		assertEquals(1, encoding.start(200).getParallelSegments());
+	}
+
+	@Test
+	public void segmentsNeedThreads() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.FAST, 0, 0, 120, new CpuBudget(6));
+		VideoEncoding.Job job = encoding.start(1800);
+		assertEquals(1, job.getParallelSegments());
+		assertEquals(6, job.getSegmentThreads());
+	}
+
+	@Test
+	public void neverSplitWithoutSegmentLength() {
+		VideoEncoding encoding = new VideoEncoding(VideoEncoding.Profile.FAST, 0, 0, 0, new CpuBudget(16));
+		assertFalse(encoding.isSegmented(7200));
+		assertEquals(1, encoding.start(7200).getParallelSegments());
+	}
+
+}
@@ -0,0 +1,54 @@
+package mfi.photos.client.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PhotosClientBatchTest {
+
+	@Test
+	public void allAlbums() {
+		PhotosClientBatch.Arguments arguments = PhotosClientBatch.parseArguments(new String[] { "--all" });
+		assertNull(arguments.error);
+		assertTrue(arguments.all);
+		assertFalse(arguments.dryRun);
+		assertTrue(arguments.albumKeys.isEmpty());
+		assertNull(arguments.userNames);
+	}
+
+	@Test
+	public void albumsUsersAndDryRun() {
+		PhotosClientBatch.Arguments arguments = PhotosClientBatch.parseArguments(
+				new String[] { "--albums", "a,b", "--albums", "c", "--users", "x,y", "--dry-run" });
+		assertNull(arguments.error);
+		assertFalse(arguments.all);
+		assertTrue(arguments.dryRun);
+		assertEquals(Arrays.asList("a", "b", "c"), arguments.albumKeys);
+		assertEquals(Arrays.asList("x", "y"), arguments.userNames);
+	}
+
+	@Test
+	public void noAlbumsIsUsageError() {
+		assertNotNull(PhotosClientBatch.parseArguments(new String[0]).error);
+		assertNotNull(PhotosClientBatch.parseArguments(new String[] { "--dry-run" }).error);
+	}
+
+	@Test
+	public void unknownArgument() {
+		assertEquals("unknown argument: --force",
+				PhotosClientBatch.parseArguments(new String[] { "--all", "--force" }).error);
+	}
+
+	@Test
+	public void missingValue() {
+		assertEquals("unknown argument: --albums",
+				PhotosClientBatch.parseArguments(new String[] { "--all", "--albums" }).error);
+	}
+
+}
@@ -0,0 +1,60 @@
+package mfi.photos.shared;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AESTest {
+
+	private static final char[] PASSWORD = "secret".toCharArray();
+
+	@Test
+	public void resumedEncryptionIsIdenticalToUninterrupted() {
+
+		byte[] plain = plainData(AES.PLAIN_CHUNK_SIZE * 3 + 1234);
+		List<ChunkData> chunks = new LinkedList<>();
+		long length = AES.encrypt(plain.length, PASSWORD, new ByteArrayInputStream(plain), "file", "dir",
+				chunks::add);
+
+		// header and 4 payload chunks, interrupted after 2 of them
+		assertEquals(5, chunks.size());
+		int startChunk = 2;
+		int offset = startChunk * AES.PLAIN_CHUNK_SIZE;
+		List<ChunkData> resumed = new LinkedList<>();
+		long resumedLength = AES.encryptResume(chunks.get(0).bytesIns, startChunk, PASSWORD,
+				new ByteArrayInputStream(plain, offset, plain.length - offset), "file", "dir", resumed::add);
+
+		assertEquals(length, resumedLength);
+		assertEquals(chunks.size() - 1 - startChunk, resumed.size());
+		for (int i = 0; i < resumed.size(); i++) {
+			assertArrayEquals(chunks.get(1 + startChunk + i).bytesIns, resumed.get(i).bytesIns);
+		}
+	}
+
+	@Test
+	public void chunksDecryptToPlainData() {
+
+		byte[] plain = plainData(AES.PLAIN_CHUNK_SIZE * 2 + 17);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		AES.encrypt(plain.length, PASSWORD, new ByteArrayInputStream(plain), "file", "dir",
+				chunk -> encrypted.write(chunk.bytesIns, 0, chunk.read));
+
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		AES.decrypt(PASSWORD, new ByteArrayInputStream(encrypted.toByteArray()), decrypted, 0, plain.length);
+		assertArrayEquals(plain, decrypted.toByteArray());
+	}
+
+	private static byte[] plainData(int length) {
+		byte[] plain = new byte[length];
+		new Random(42L).nextBytes(plain);
+		return plain;
+	}
+
+}